@@ -1,6 +1,7 @@
 import scheme._
 
 import java.io.FileNotFoundException
+import java.nio.file.Paths
 import java.sql.Timestamp
 import java.time.LocalDateTime
 import org.apache.spark.sql.Row
@@ -39,12 +40,18 @@ def StringtoSpark(value: String, dataType: DataType): Any = {
   }
 }
 
+// schemata of files which haven't changed since the last run are kept here
+val schemaCache = new SchemaCache(Paths.get(".scheme-cache"))
+
 def CSVtoParquet[_](filename: String): org.apache.spark.sql.Dataset[_] = {
 
   try {
 
-    // first, infer Java-style CSV schema using scheme package
-    val javaSchema = CSV.schema(filename, false, true, false, true)
+    // first, infer Java-style CSV schema using scheme package (along with
+    // the header extents of this file, whichever thread we're on), unless
+    // it's already in the cache
+    val result = schemaCache.infer(filename, Options.defaults().withCommonTypes(true))
+    val javaSchema = result.schema
 
     // map Java types => Spark types to create Parquet schema
     val sparkSchema = StructType(javaSchema.map(e =>
@@ -54,7 +61,7 @@ def CSVtoParquet[_](filename: String): org.apache.spark.sql.Dataset[_] = {
     val sparkTypes = javaSchema.map(e => JavatoSpark(e.getValue.toString)).toSeq
 
   	// get the header extents
-    val headerExtents = CSV.headerExtents()
+    val headerExtents = result.headerExtents()
 
     // create our custom DataFrame by...
     val df = spark.createDataFrame(
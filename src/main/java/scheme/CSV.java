@@ -1,22 +1,19 @@
 package scheme;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * Class for working with comma-separated values (CSVs) within <em>scheme</em>.
@@ -34,126 +31,145 @@ public class CSV {
    * <p><strong>Usage:</strong></p>
    *
    * <pre>{@code
-   * $ java --class-path scheme-1.0.jar <csvfile.csv>
+   * $ java -jar scheme-1.0.jar [-r] [-j <threads>] [-s <sampling>] [-c <cache>] <file|directory>...
+   * $ java -jar scheme-1.0.jar -w [-j <threads>] [-s <sampling>] <directory>
+   * $ java -jar scheme-1.0.jar -p <port> [-s <sampling>]
    * }</pre>
    *
-   * @param args list of CSV files for which schema should be determined
+   * <p>Each argument may be a CSV file or a directory. Directories are expanded
+   * into the {@code *.csv} files they contain, in alphabetical order; with
+   * {@code -r}, subdirectories are searched, too. Schemata are inferred on a
+   * pool of {@code -j} worker threads (by default, one per core), but are
+   * always printed in the order in which the files were given.
+   * {@code -s} selects the {@link Sampling} strategy, e.g. {@code -s parallel}.
+   * With {@code -c}, schemata are kept in a {@link SchemaCache} in the given
+   * directory, and files which haven't changed since the last run aren't
+   * analysed again.</p>
+   *
+   * <p>With {@code -r} or {@code -j}, the time taken to infer each schema is
+   * also printed, followed by a summary of the overall throughput.</p>
+   *
+   * <p>With {@code -w}, the given directory is watched by a
+   * {@link DirectoryWatcher} until the process is stopped, and the schema of
+   * each CSV file which lands in it is printed once the file has stayed the
+   * same for a second.</p>
+   *
+   * <p>With {@code -p}, a {@link SchemaServer} answers requests for schemata
+   * on the given port of the loopback address until the process is stopped,
+   * e.g. {@code curl 'http://localhost:8080/schema?path=example.csv'}.</p>
+   *
+   * @param args list of CSV files (and directories of CSV files) for which
+   * schema should be determined, optionally preceded by the flags above
    *
    */
   public static void main (String[] args) {
-
-    for (String arg : args) {
-
-      System.out.println();
-
-      try {
-        List<Entry<String, Class<?>>> schema = schema(arg);
-        System.out.println("file: '" + arg + "' schema:\n");
-        schema.stream().forEach(System.out::println);
-
-      } catch (FileNotFoundException ex) {
-        System.out.println("file: '" + arg + "' not found");
-
-      } catch (IOException ex) {
-        System.out.println("error reading file: '" + arg + "'");
-      }
-
-      System.out.println();
-    }
-
+    Cli.run(args, System.out);
   }
 
   /**
-   * Parses a single line of text as CSV and returns the parsed tokens in a
-   * {@link List}.
+   * Returns the number of lines in the given CSV {@code file}.
    *
-   * <p>If the given {@code line} is null or empty, an empty {@link List} will
-   * be returned. Otherwise, a regular expression is used to parse the
-   * {@code line} as CSV.</p>
+   * <p>This reads the entire file, so it can be slow for very large files.
+   * {@link #schema(String) schema()} never calls this method -- it only reads
+   * the rows which it samples -- so call it only if you need an exact line
+   * count.</p>
    *
-   * @param line line of text to parse as CSV
-   * @return a {@link List} of tokens parsed from the given {@code line}
+   * <p>Lines are counted by their terminating {@code '\n'} characters. A
+   * non-empty file which contains no {@code '\n'} is one line long, and an
+   * empty file has no lines. The file is read through memory-mapped windows,
+   * so files larger than 2GB can be counted.</p>
    *
+   * @param filename the path of the file whose lines should be counted
+   * @return the number of lines in the {@code file}
+   * @throws FileNotFoundException if {@code file} refers to a file which does
+   * not exist
+   * @throws IOException if there was a problem reading the {@code file}
    */
-  private static List<String> parseAsCSV (String line) {
-
-    // if line is null or empty, return an empty array
-    if (line == null || line.length() == 0) return new ArrayList<String>(0);
-
-    // regex string for parsing lines of CSV
-    String regex = "(?:,|\\n|^)[ ]*((?:\"(?:(?:\"\")*(?:[^\"])*)*\")|(?:[^\",\\n]*)|(?:\\n|$))";
+  public static long nLinesInFile (String filename) throws FileNotFoundException, IOException {
 
-    // compile regex pattern and apply it to the given line
-    Matcher matcher = Pattern.compile(regex).matcher(line);
+    try (FileChannel channel = RecordReader.openChannel(filename)) {
 
-    // save all of the matches to this ArrayList
-    ArrayList<String> list = new ArrayList<>();
-    while (matcher.find()) list.add(matcher.group(1));
+      // if the file is empty, it has no lines
+      if (channel.size() == 0) return 0;
 
-    // If the first character of a line is a comma, the regex above will miss
-    // the fact that the first entry is null. So we add an empty String to the
-    // beginning of the ArrayList.
+      // otherwise, count the '\n' characters in the file
+      long count = RecordReader.countNewlines(channel);
 
-    if (line.charAt(0) == ',') list.add(0, "");
-    return list;
-  }
-
-  // get a file as a BufferedInputStream
-  private static final BufferedInputStream getBIS (String filename) throws FileNotFoundException {
-    return new BufferedInputStream(new FileInputStream(filename));
-  }
-
-  //  based on martinus' method to quickly count the number of lines in a file:
-  //    https://stackoverflow.com/a/453067/2925434
-
-  private static int nLinesInFile (String filename) throws FileNotFoundException, IOException {
-
-    // get the buffered input stream -- throws FileNotFoundException
-    InputStream is = getBIS(filename);
-
-    // read the stream in 4KB chunks
-    byte[] bytes = new byte[4096];
-
-    // read using read() -- throws IOException
-    int readChars = is.read(bytes);
-    if (readChars == -1) return 0;
-
-    // make it easy for the optimizer to tune this loop
-    int count = 0;
-    while (readChars == 4096) {
-      for (int ii = 0; ii < 4096; ) if (bytes[ii++] == '\n') ++count;
-      readChars = is.read(bytes);
+      // return the number of lines in the file
+      return count == 0 ? 1 : count;
     }
 
-    // count remaining characters
-    while (readChars != -1) {
-      for (int ii = 0; ii < readChars; ++ii) if (bytes[ii] == '\n') ++count;
-      readChars = is.read(bytes);
-    }
-
-    // return the number of lines in the file
-    return count == 0 ? 1 : count;
-
   }
 
-  private static int[] headerExtents = new int[]{-1, -1};
+  // the result of the most recent successful call to schema() on each thread
+  private static final ThreadLocal<SchemaResult> lastResult = new ThreadLocal<>();
 
   /**
    * Returns the extents (line / row indices) which define the header region of
-   * the most recently-analysed CSV file.
+   * the CSV file most recently analysed by {@link #schema(String, Options)
+   * schema()} on the calling thread.
    *
    * <p>Returns {@code int[]{-1, -1}} if no header region was found. Otherwise,
    * if both array elements are equal, then the header is just a single line.</p>
    *
    * @return a two-element {@code int} array giving the first (inclusive) and
    * last (exclusive) row index (0-based) of the header region
+   * @deprecated use {@link #infer(String, Options) infer()}, whose
+   * {@link SchemaResult} holds the header extents of the file it analysed
    */
+  @Deprecated
   public static int[] headerExtents() {
+    SchemaResult result = lastResult.get();
+    return result == null ? new int[]{-1, -1} : result.headerExtents();
+  }
 
-    int[] extents = new int[2];
-    System.arraycopy(headerExtents, 0, extents, 0, 2);
+  /**
+   * Returns the date-time format of each column of the CSV file most recently
+   * analysed by {@link #schema(String, Options) schema()} on the calling
+   * thread.
+   *
+   * <p>For each column of {@link LocalDateTime}s, this is the pattern (as
+   * returned by {@link DateTimeFormats#strings()}) of the date-time format
+   * which parsed every date-time that was analysed in that column, so that the
+   * column can be parsed with a single {@link java.time.format.DateTimeFormatter}.
+   * It is {@code null} for any other column, or if the column's date-times
+   * needed more than one format.</p>
+   *
+   * <p>While the schema is inferred, the format which matched the previous
+   * date-time in each column is always tried first.</p>
+   *
+   * @return an unmodifiable list of the date-time format of each column
+   * @deprecated use {@link #infer(String, Options) infer()}, whose
+   * {@link SchemaResult} holds the date-time formats of the file it analysed
+   */
+  @Deprecated
+  public static List<String> dateFormats() {
+    SchemaResult result = lastResult.get();
+    return result == null ? Collections.emptyList() : result.dateFormats();
+  }
 
-    return extents;
+  /**
+   * Returns the statistics of each column of the CSV file most recently
+   * analysed by {@link #schema(String, Options) schema()} on the calling
+   * thread, if {@link Options#withColumnStats(boolean) column statistics}
+   * were asked for.
+   *
+   * <p>The statistics are collected while the types of the columns are
+   * inferred, from the same rows, so they don't need another pass over the
+   * file: the numbers of missing and empty tokens, the smallest and largest
+   * values of numeric columns, the shortest and longest tokens, and the
+   * (approximate) number of distinct tokens in each column; see
+   * {@link ColumnStats}.</p>
+   *
+   * @return an unmodifiable list of the statistics of each column, or an
+   * empty list if they weren't asked for
+   * @deprecated use {@link #infer(String, Options) infer()}, whose
+   * {@link SchemaResult} holds the statistics of the file it analysed
+   */
+  @Deprecated
+  public static List<ColumnStats> columnStats() {
+    SchemaResult result = lastResult.get();
+    return result == null ? Collections.emptyList() : result.columnStats();
   }
 
   /**
@@ -173,7 +189,7 @@ public class CSV {
    */
   public static List<Entry<String, Class<?>>> schema (String file)
     throws FileNotFoundException, IOException {
-    return schema(file, -1, -1, 35, false, false, false, true);
+    return schema(file, Options.defaults());
   }
 
   /**
@@ -210,7 +226,8 @@ public class CSV {
   public static List<Entry<String, Class<?>>> schema (String file,
     boolean bool01, boolean commonTypes, boolean postfixFL, boolean parseDates)
     throws FileNotFoundException, IOException {
-    return schema(file, -1, -1, 35, bool01, commonTypes, postfixFL, parseDates);
+    return schema(file, Options.defaults().withBool01(bool01).withCommonTypes(
+      commonTypes).withPostfixFL(postfixFL).withParseDates(parseDates));
   }
 
   /**
@@ -226,6 +243,12 @@ public class CSV {
    * {@code lastHeaderRowIndex}, the columns will be labeled {@code X1...XN},
    * where {@code N} is the number of columns in the file.</p>
    *
+   * <p>Only the rows which are analysed are ever read from the {@code file}, so
+   * the header region must lie within those rows. Header row indices beyond
+   * the last analysed row are treated as invalid. Use
+   * {@link #nLinesInFile(String) nLinesInFile()} if you need to know how many
+   * lines the whole file contains.</p>
+   *
    * <p>The minimum number of rows required to analyse and make a decent guess
    * at the type of data contained within a column is 7. This, plus a 10-row
    * metadata / header row buffer, is the minimum number of rows to be analysed.
@@ -262,67 +285,249 @@ public class CSV {
     int firstHeaderRowIndex, int lastHeaderRowIndex, int nTestRows,
     boolean bool01, boolean commonTypes, boolean postfixFL, boolean parseDates)
     throws FileNotFoundException, IOException {
+    return schema(file, Options.defaults()
+      .withHeaderRows(firstHeaderRowIndex, lastHeaderRowIndex)
+      .withTestRows(nTestRows).withBool01(bool01).withCommonTypes(commonTypes)
+      .withPostfixFL(postfixFL).withParseDates(parseDates));
+  }
+
+  /**
+   * Works just like
+   * {@link #schema(String, int, int, int, boolean, boolean, boolean, boolean) schema()},
+   * but with all of the options bundled into a single {@link Options} object,
+   * which also selects the {@link Sampling} strategy used to choose which rows
+   * are analysed to infer the type of data held within each column.
+   *
+   * <p>With {@link Sampling#HEAD}, only the first
+   * {@code max(7, nTestRows) + 10} rows are read, exactly as
+   * {@link #schema(String, int, int, int, boolean, boolean, boolean, boolean) schema()}
+   * does. With {@link Sampling#STREAM} and {@link Sampling#PARALLEL}, those
+   * rows are still used to find the column headers, but then every row after
+   * the header rows is analysed -- in constant memory on the calling thread,
+   * or using every available core, respectively. With {@link Sampling#RANDOM},
+   * {@link Options#sampleSize() sampleSize} rows from across the whole file
+   * are analysed, as well as the rows after the header rows.</p>
+   *
+   * <p>The file's encoding is worked out from its byte order mark, if it has
+   * one, or else from its first 64kB: UTF-8 if they're valid UTF-8, otherwise
+   * the platform's default charset (or ISO-8859-1, if that's UTF-8). Files
+   * encoded in UTF-16 or UTF-32 aren't supported. Tokens which are entirely
+   * ASCII -- all numbers, booleans and date-times -- are typed straight from
+   * the bytes of the file, and only the others are decoded.</p>
+   *
+   * <p>The header extents, date-time formats and statistics of the file are
+   * remembered for {@link #headerExtents()}, {@link #dateFormats()} and
+   * {@link #columnStats()}, but only on the calling thread; use
+   * {@link #infer(String, Options) infer()} to get all of them at once.</p>
+   *
+   * @param file the path of the CSV file to parse
+   * @param options the options which control how the schema is inferred
+   * @return a {@code List<Entry<String, Class<?>>>} describing the schema of
+   * this CSV file, where the {@link String} of each entry is the inferred
+   * column name and the {@link Class} is the inferred column class
+   * @throws FileNotFoundException if {@code file} refers to a file which does
+   * not exist
+   * @throws IOException if there was a problem reading the {@code file}
+   */
+  public static List<Entry<String, Class<?>>> schema (String file, Options options)
+    throws FileNotFoundException, IOException {
+
+    SchemaResult result;
+
+    // a missing file throws FileNotFoundException, but other errors while
+    // reading the file just return null
+    try {
+      result = infer(file, options);
+
+    } catch (FileNotFoundException ex) {
+      throw ex;
 
-    // get the number of lines in this CSV file
-    int nLinesInFile = nLinesInFile(file);
+    } catch (UnsupportedEncodingException ex) {
+      System.err.println("schema() : unsupported encoding " + ex.getMessage() + "; returning null");
+      return null;
 
-    // if < 1, quit early
-    if (nLinesInFile < 1) {
-      System.err.println("schema() : no data in file");
+    } catch (IOException ex) {
+      System.err.println("schema() : I/O error; returning null");
       return null;
     }
 
-    //--------------------------------------------------------------------------
-    //
-    //  Step 1: tokenise and typify first N rows of the file
-    //
-    //--------------------------------------------------------------------------
+    for (String message : result.diagnostics()) System.err.println("schema() : " + message);
+    if (result.schema() == null) return null;
 
-    // tokenize some lines and typify the tokens
-    List<List<String>>   tokens = new ArrayList<>();
-    List<List<Class<?>>> types  = new ArrayList<>();
+    // remember the result for headerExtents(), etc., on this thread only
+    lastResult.set(result);
 
-    // try to read the file
-    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-      String line = null; int lineIndex = 0;
+    List<Entry<String, Class<?>>> schema = new ArrayList<>(result.schema().size());
+    for (Entry<String, Class<?>> column : result.schema())
+      schema.add(new SimpleEntry<>(column.getKey(), column.getValue()));
 
-      // minimum 7 rows required for a decision, plus header buffer
-      int nHeadRows = Math.max(7, nTestRows) + 10;
+    return schema;
+  }
+
+  /**
+   * Works just like {@link #schema(String, Options) schema()}, but returns
+   * the schema along with everything else that was found out about the file
+   * -- its header extents, the date-time format and (if they were asked for)
+   * the statistics of each column, and any diagnostic messages -- in a single
+   * immutable {@link SchemaResult}, instead of printing messages to the
+   * standard error stream and leaving the rest to be picked up by
+   * {@link #headerExtents()}, etc.
+   *
+   * <p>This method has no side effects, so it can be called on any number of
+   * files at once, from any number of threads, without any locking.</p>
+   *
+   * @param file the path of the CSV file to parse
+   * @param options the options which control how the schema is inferred
+   * @return the schema of the file (which is {@code null} if the file contains
+   * no data), and everything else that was found out about it
+   * @throws FileNotFoundException if {@code file} refers to a file which does
+   * not exist
+   * @throws java.io.UnsupportedEncodingException if the file is encoded in
+   * UTF-16 or UTF-32
+   * @throws IOException if there was a problem reading the {@code file}
+   */
+  public static SchemaResult infer (String file, Options options)
+    throws FileNotFoundException, IOException {
+
+    // the date-time formats which are recognised, which stay the same
+    // throughout, even if the registry they come from changes
+    return infer(file, options, options.dateFormats().snapshot(), null);
+  }
 
-      // loop over lines in file, quit if no more lines to read
-      while ((line = reader.readLine()) != null) {
+  /**
+   * Infers the schema of a CSV file which is only ever appended to -- a log,
+   * for instance -- reading only the records which have been added to it
+   * since the given {@code checkpoint} was made.
+   *
+   * <p>The first time, with a {@code null} checkpoint, the header is found
+   * just as {@link #infer(String, Options) infer()} would find it, and every
+   * record after it is analysed (as with {@link Sampling#STREAM}, whatever
+   * {@code options.sampling()} is). The returned {@link SchemaCheckpoint}
+   * holds the schema, and the distinct types seen in each column; pass it to
+   * the next call, and only the records which have been appended since are
+   * read, and the types are widened to fit them. So keeping the schema of a
+   * growing file up to date costs time in proportion to the new data, not to
+   * the size of the file:</p>
+   *
+   * <pre>{@code
+   * jshell> SchemaCheckpoint checkpoint = CSV.resume("log.csv", Options.defaults(), null)
+   * jshell> // ...more records are appended to log.csv...
+   * jshell> checkpoint = CSV.resume("log.csv", Options.defaults(), checkpoint)
+   * jshell> checkpoint.result().schema()
+   * }</pre>
+   *
+   * <p>A final record which doesn't end with a line break (outside of any
+   * quoted token) is assumed to be still being written, and is left for the
+   * next call. The whole file is
+   * analysed again, instead, if its first few records (those which are
+   * searched for the header) have changed, if it's shorter than it was, or
+   * if the options (or the date-time formats they recognise) are different
+   * -- and also while the file is still too short for its header rows to be
+   * found for certain. Column statistics aren't collected.</p>
+   *
+   * @param file the path of the CSV file to parse
+   * @param options the options which control how the schema is inferred
+   * @param checkpoint the checkpoint returned by the previous call for the
+   * same file, or {@code null}
+   * @return a new checkpoint, whose {@link SchemaCheckpoint#result() result()}
+   * is the schema of the file
+   * @throws FileNotFoundException if {@code file} refers to a file which does
+   * not exist
+   * @throws java.io.UnsupportedEncodingException if the file is encoded in
+   * UTF-16 or UTF-32
+   * @throws IOException if there was a problem reading the {@code file}
+   */
+  public static SchemaCheckpoint resume (String file, Options options,
+    SchemaCheckpoint checkpoint) throws FileNotFoundException, IOException {
+
+    // the date-time formats which are recognised, which stay the same
+    // throughout, even if the registry they come from changes
+    FormatIndex formats = options.dateFormats().snapshot();
+    options = options.withDateFormats(new DateTimeFormatRegistry(formats)).withColumnStats(false);
+
+    try (FileChannel channel = RecordReader.openChannel(file)) {
+
+      // read only the records which have been appended since the checkpoint...
+      if (checkpoint != null && checkpoint.continues(channel, options.fingerprint())) {
+        ColumnTypes types = checkpoint.types();
+        long offset = TypeScan.appended(channel, checkpoint.charset(), checkpoint.offset(),
+          options, formats, types);
+        return checkpoint.next(file, offset, types, formats);
+      }
 
-        // increment the line index, break if more than maximum
-        if (++lineIndex > nHeadRows) break;
+      // ...or find the header, and then read every record after it
+      Header header = new Header();
+      SchemaResult result = infer(file, options.withSampling(Sampling.HEAD), formats, header);
 
-        // parse the line into tokens
-        List<String> lineTokens = parseAsCSV(line);
+      ColumnTypes types = new ColumnTypes();
+      long offset = result.schema() == null ? 0 :
+        TypeScan.appended(channel, header.charset, header.dataStart, options, formats, types);
 
-        // ...then, infer the types of those tokens
-        List<Class<?>> lineTypes = lineTokens.stream()
-          .map(e -> StringManip.typify(e, bool01, commonTypes, postfixFL, parseDates)
-          .getKey()).collect(Collectors.toList());
+      return SchemaCheckpoint.first(file, result, header.names, header.complete,
+        RecordReader.checksum(channel, result.headBytes()), options, header.charset,
+        offset, types, formats);
+    }
+  }
 
-        // add these lines to the collections defined above
-        tokens.add(lineTokens);
-        types.add(lineTypes);
-      }
+  // what infer() found out about the header of a file, for resume()
+  private static final class Header {
+    List<String> names = Collections.emptyList(); // column names, before they're matched to columns
+    Charset charset = StandardCharsets.UTF_8;
+    long dataStart = 0;       // file offset of the first record after the header
+    boolean complete = false; // were all of the head rows there, so the header can't change?
+  }
 
-    } catch (FileNotFoundException ex) {
-      System.err.println("schema() : file not found; returning null");
-      return null;
+  // infers the schema of the file, recognising only the given date-time
+  // formats, and, if 'header' isn't null, fills it in
+  private static SchemaResult infer (String file, Options options,
+    FormatIndex formats, Header header) throws FileNotFoundException, IOException {
 
-    } catch (IOException ex) {
-      System.err.println("schema() : I/O error; returning null");
-      return null;
+    // problems which don't stop the schema from being inferred
+    List<String> diagnostics = new ArrayList<>();
+
+    int firstHeaderRowIndex = options.firstHeaderRowIndex();
+    int  lastHeaderRowIndex = options.lastHeaderRowIndex();
+    int           nTestRows = options.nTestRows();
+
+    //--------------------------------------------------------------------------
+    //
+    //  Step 1: tokenise and typify first N rows of the file
+    //
+    //--------------------------------------------------------------------------
+
+    // minimum 7 rows required for a decision, plus header buffer
+    int nHeadRows = Math.max(7, nTestRows) + 10;
+
+    // tokenize some lines and typify the tokens, storing them column by column
+    ColumnSamples head = new ColumnSamples(nHeadRows);
+
+    // the encoding of the file, and the file offset of its first record
+    // (after any byte order mark)
+    Charset charset;
+    long firstRecord;
+
+    // try to read the file, straight from memory-mapped windows of it
+    try (RecordReader reader = RecordReader.open(file)) {
+      charset = reader.charset();
+      firstRecord = reader.position();
+
+      // loop over records in file, quit if no more records to read or if
+      // we've read the maximum number of lines; infer the types of each
+      // record's tokens, trying the date-time format which matched the token
+      // above each one first
+      while (!head.isFull() && reader.next()) head.add(reader, options, formats);
     }
 
     // get maximum column index we've seen
-    int nCols = types.stream().mapToInt(e -> e.size()).max().orElse(0);
+    int nCols = head.nColumns();
+
+    // the part of the file we've read so far
+    long headBytes = head.nRows() == 0 ? firstRecord : head.rowEnd(head.nRows() - 1);
 
     if (nCols < 1) {
-      System.err.println("schema() : no data found in file");
-      return null;
+      diagnostics.add("no data found in file");
+      return new SchemaResult(file, null, -1, -1, Collections.emptyList(),
+        Collections.emptyList(), diagnostics, headBytes);
     }
 
     //--------------------------------------------------------------------------
@@ -335,47 +540,41 @@ public class CSV {
     int firstHeaderRow = firstHeaderRowIndex;
     int  lastHeaderRow =  lastHeaderRowIndex;
 
-    if ( firstHeaderRow > lastHeaderRow
-      || firstHeaderRow < 0 || firstHeaderRow >= nLinesInFile
-      ||  lastHeaderRow < 0 ||  lastHeaderRow >= nLinesInFile) {
+    // user-supplied header rows must lie within the rows we've read; we never
+    // count the lines in the whole file, because that means reading all of it
+    int nSampledRows = head.nRows();
 
-      // header row should comprise all String-type data
-      List<Class<?>> dummyHeader = Collections.nCopies(nCols, String.class);
+    if ( firstHeaderRow > lastHeaderRow
+      || firstHeaderRow < 0 || firstHeaderRow >= nSampledRows
+      ||  lastHeaderRow < 0 ||  lastHeaderRow >= nSampledRows) {
 
-      // get similarity between each row and dummy header row
-      List<Double> similarity = IntStream.range(0, types.size())
-        .mapToDouble(ii -> CollectionManip.similarity(types.get(ii), dummyHeader))
-        .boxed().collect(Collectors.toList());
+      // header row should comprise all String-type data, so get similarity
+      // between each row and a dummy header row of only Strings
+      double[] similarity = new double[nSampledRows];
+      for (int rr = 0; rr < nSampledRows; ++rr) similarity[rr] = head.stringSimilarity(rr);
 
       // get maximum similarity across test rows
-      Double maxSimilarity = similarity.stream().mapToDouble(x -> x).max().getAsDouble();
+      double maxSimilarity = Arrays.stream(similarity).max().getAsDouble();
 
       // starting from the end of the range, find first row with max similarity
-      lastHeaderRow = similarity.lastIndexOf(maxSimilarity);
+      lastHeaderRow = nSampledRows - 1;
+      while (similarity[lastHeaderRow] != maxSimilarity) --lastHeaderRow;
 
       // if last header row is last row in range, definitely a problem
-      if (lastHeaderRow == (types.size()-1)) {
-        System.err.println("schema() : could not infer column names");
+      if (lastHeaderRow == (nSampledRows-1)) {
+        diagnostics.add("could not infer column names");
         lastHeaderRow = firstHeaderRow = -1;
 
       // otherwise, we may have found the column headers
       } else {
 
-        // find first row prior to lastHeaderRow that doesn't look like a header row
-        List<Double> potentialHeader = similarity.subList(0, lastHeaderRow);
-        Collections.reverse(potentialHeader);
-
-        firstHeaderRow = potentialHeader.lastIndexOf(maxSimilarity);
-        if (firstHeaderRow < 0) firstHeaderRow = lastHeaderRow;
-        else firstHeaderRow = lastHeaderRow - (firstHeaderRow + 1);
+        // the header region begins at the first row with max similarity
+        firstHeaderRow = 0;
+        while (similarity[firstHeaderRow] != maxSimilarity) ++firstHeaderRow;
 
       }
     }
 
-    // save header extents to class variable
-    headerExtents[0] = firstHeaderRow;
-    headerExtents[1] = lastHeaderRow;
-
     //--------------------------------------------------------------------------
     //
     //  Step 3: parse column headers or generate dummy ones
@@ -389,21 +588,20 @@ public class CSV {
     if (firstHeaderRow >= 0) {
 
       // merged column headers
-      List<String> mergedHeaders = new ArrayList<>(tokens.get(firstHeaderRow));
+      List<String> mergedHeaders = new ArrayList<>(head.rowLength(firstHeaderRow));
+      for (int cc = 0; cc < head.rowLength(firstHeaderRow); ++cc)
+        mergedHeaders.add(head.text(cc, firstHeaderRow));
 
       // if multiple header rows, merge header rows into column names
       if (lastHeaderRow > firstHeaderRow) {
 
         // loop over header rows
-        for (int rr = 1; rr <= (lastHeaderRow - firstHeaderRow); ++rr) {
-
-          // get this header row
-          List<String> headerRow = tokens.get(firstHeaderRow+rr);
+        for (int rr = firstHeaderRow+1; rr <= lastHeaderRow; ++rr) {
 
           // loop over this row's elements
-          for (int cc = 0; cc < headerRow.size(); ++cc) {
+          for (int cc = 0; cc < head.rowLength(rr); ++cc) {
             if (mergedHeaders.size() < (cc+1)) mergedHeaders.add("");
-            mergedHeaders.set(cc, mergedHeaders.get(cc) + "_" + headerRow.get(cc));
+            mergedHeaders.set(cc, mergedHeaders.get(cc) + "_" + head.text(cc, rr));
           }
         }
       }
@@ -419,27 +617,70 @@ public class CSV {
       for (int xx = 1; xx <= nCols; ++xx) colNames.add("X" + xx);
     }
 
+    // the data begins at the end of the last header row
+    long dataStart = lastHeaderRow < 0 ? firstRecord : head.rowEnd(lastHeaderRow);
+
+    if (header != null) {
+      header.names     = colNames;
+      header.charset   = charset;
+      header.dataStart = dataStart;
+      header.complete  = head.isFull();
+    }
+
     //--------------------------------------------------------------------------
     //
     //  Step 4: infer type of data held in each column
     //
     //--------------------------------------------------------------------------
 
-    // transpose lines of classes into columns of classes
-    List<List<Class<?>>> transposedTypes = CollectionManip.transpose(
-      types.subList(lastHeaderRow+1, types.size()));
+    // the rows after the header which we've already read
+    ColumnTypes headTypes = head.types(lastHeaderRow+1, options);
+
+    ColumnTypes columnTypes;
+
+    // analyse only the rows we've already read...
+    if (options.sampling() == Sampling.HEAD) {
+      columnTypes = headTypes;
+
+    // ...or every row after the header (one after another or in parallel), or
+    // a random sample of them
+    } else {
+
+      try (FileChannel channel = RecordReader.openChannel(file)) {
+
+        switch (options.sampling()) {
+          case STREAM:
+            columnTypes = TypeScan.sequential(channel, charset, dataStart, channel.size(), options, formats);
+            break;
 
-    // compress classes by finding narrowest common type
-    List<Class<?>> colClasses = transposedTypes.stream().
-      map(l -> CollectionManip.narrowestCommonType(l)).collect(Collectors.toList());
+          case RANDOM: // ...of the rows after those we've already read, plus those
+            columnTypes = TypeScan.random(channel, charset, headBytes, nCols, options, formats).merge(headTypes);
+            break;
 
-    // zip colNames and colClasses lists into a single list
+          default:
+            columnTypes = TypeScan.parallel(channel, charset, dataStart, options, formats);
+        }
+
+      }
+    }
+
+    List<Class<?>> colClasses = columnTypes.narrowest();
+
+    // the date-time format, and the statistics, of each column
+    List<String> dateFormats = columnTypes.datePatterns(formats);
+    List<ColumnStats> columnStats = columnTypes.stats() == null ?
+      Collections.emptyList() : columnTypes.stats().stats(colClasses);
+
+    // zip colNames and colClasses lists into a single list (data rows may have
+    // more columns than the header rows -- give those generic names)
     List<Entry<String, Class<?>>> schema = new ArrayList<>();
 
     for (int ii = 0; ii < colClasses.size(); ++ii)
-      schema.add(new SimpleEntry<>(colNames.get(ii), colClasses.get(ii)));
+      schema.add(new SimpleImmutableEntry<>(ii < colNames.size() ? colNames.get(ii) : ("X" + (ii+1)),
+        colClasses.get(ii)));
 
-    return schema;
+    return new SchemaResult(file, schema, firstHeaderRow, lastHeaderRow,
+      dateFormats, columnStats, diagnostics, headBytes);
 
   }
 
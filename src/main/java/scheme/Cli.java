@@ -0,0 +1,250 @@
+package scheme;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of the <em>scheme</em> command-line interface; see
+ * {@link CSV#main(String[]) CSV.main()}.
+ */
+final class Cli {
+
+  // * private default constructor because this is a utility class
+  private Cli(){}
+
+  static final String USAGE =
+    "usage: java -jar scheme-1.0.jar [-r] [-j <threads>] [-s <sampling>] [-c <cache>] <file|directory>...\n" +
+    "       java -jar scheme-1.0.jar -w [-j <threads>] [-s <sampling>] <directory>\n" +
+    "       java -jar scheme-1.0.jar -p <port> [-s <sampling>]";
+
+  // how long a file must stay the same, in watch mode, before it's analysed
+  private static final long QUIET_MILLIS = 1000;
+
+  // result of inferring the schema of a single file
+  private static final class Result {
+    final String file;
+    final List<Entry<String, Class<?>>> schema; // null if none could be inferred
+    final String error;                         // null if there was no I/O error
+    final long bytes, nanos;
+
+    Result (String file, List<Entry<String, Class<?>>> schema, String error, long bytes, long nanos) {
+      this.file = file; this.schema = schema; this.error = error;
+      this.bytes = bytes; this.nanos = nanos;
+    }
+  }
+
+  /**
+   * Parses the command-line arguments, infers the schemas of all of the files
+   * they refer to, and prints them to {@code out}.
+   */
+  static void run (String[] args, PrintStream out) {
+
+    boolean recursive = false;   // walk directories recursively?
+    boolean batch = false;       // print timings and a summary?
+    boolean watch = false;       // watch a directory for new files?
+    int port = -1;               // serve schemata over HTTP, on this port?
+    int nThreads = Runtime.getRuntime().availableProcessors();
+    Options options = Options.defaults();
+    String cacheDirectory = null; // cache schemata on disk?
+    List<String> paths = new ArrayList<>();
+
+    // parse the arguments
+    try {
+      for (int ii = 0; ii < args.length; ++ii) {
+        switch (args[ii]) {
+          case "-r": recursive = batch = true; break;
+          case "-j": nThreads = Integer.parseInt(args[++ii]); batch = true; break;
+          case "-s": options = options.withSampling(
+                       Sampling.valueOf(args[++ii].toUpperCase(Locale.ROOT))); break;
+          case "-c": cacheDirectory = args[++ii]; break;
+          case "-w": watch = true; break;
+          case "-p": port = Integer.parseInt(args[++ii]); break;
+          default:   paths.add(args[ii]);
+        }
+      }
+      if (nThreads < 1) throw new IllegalArgumentException("-j must be at least 1");
+      if (watch && (paths.size() != 1 || !new File(paths.get(0)).isDirectory()))
+        throw new IllegalArgumentException("-w needs a single directory");
+      if (port >= 0 && (watch || !paths.isEmpty()))
+        throw new IllegalArgumentException("-p takes no files");
+      if (port > 65535) throw new IllegalArgumentException("-p must be a port number");
+
+    } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex) {
+      System.err.println(USAGE);
+      return;
+    }
+
+    if (watch) { watch(Paths.get(paths.get(0)), options, nThreads, out); return; }
+    if (port >= 0) { serve(port, options, out); return; }
+
+    // expand any directories into the CSV files they contain, in a stable order
+    List<String> files = new ArrayList<>();
+    for (String path : paths) {
+      if (!new File(path).isDirectory()) { files.add(path); continue; }
+
+      try (Stream<Path> walk = recursive ? Files.walk(Paths.get(path)) : Files.list(Paths.get(path))) {
+        files.addAll(walk.filter(Files::isRegularFile)
+          .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv"))
+          .map(Path::toString).sorted().collect(Collectors.toList()));
+
+      } catch (IOException ex) {
+        System.err.println("error reading directory: '" + path + "'");
+      }
+    }
+
+    SchemaCache cache = null;
+    if (cacheDirectory != null) {
+      try {
+        cache = new SchemaCache(Paths.get(cacheDirectory));
+      } catch (IOException ex) {
+        System.err.println("error creating cache directory: '" + cacheDirectory + "'");
+      }
+    }
+
+    // infer schemas on a bounded pool of workers...
+    final Options finalOptions = options;
+    final SchemaCache finalCache = cache;
+    ExecutorService pool = Executors.newFixedThreadPool(nThreads, runnable -> {
+      Thread thread = new Thread(runnable, "scheme-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    long start = System.nanoTime();
+    List<Future<Result>> futures = files.stream()
+      .map(file -> pool.submit(() -> infer(file, finalOptions, finalCache)))
+      .collect(Collectors.toList());
+
+    // ...but print the results in the order the files were given
+    int nFiles = 0, nFailed = 0; long nBytes = 0;
+    try {
+      for (int ii = 0; ii < futures.size(); ++ii) {
+        Result result;
+
+        // an unexpected error in one file doesn't stop the others
+        try {
+          result = futures.get(ii).get();
+        } catch (ExecutionException ex) {
+          result = new Result(files.get(ii), null, String.valueOf(ex.getCause()), 0, 0);
+        }
+
+        out.print(format(result, batch));
+
+        ++nFiles; nBytes += result.bytes;
+        if (result.schema == null) ++nFailed;
+      }
+
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+
+    } finally {
+      pool.shutdownNow();
+      if (cache != null) cache.close();
+    }
+
+    // throughput summary
+    if (batch) {
+      double seconds = (System.nanoTime() - start) / 1e9;
+      out.printf(Locale.ROOT, "%d files (%d failed), %.1f MB in %.3f s: %.1f files/s, %.1f MB/s%n",
+        nFiles, nFailed, nBytes / 1e6, seconds, nFiles / seconds, nBytes / 1e6 / seconds);
+    }
+  }
+
+  // infers the schema of a single file (or finds it in the cache, if there
+  // is one) and times how long that takes
+  private static Result infer (String file, Options options, SchemaCache cache) {
+    long start = System.nanoTime();
+
+    try {
+      SchemaResult result = cache == null ? CSV.infer(file, options) : cache.infer(file, options);
+      for (String message : result.diagnostics())
+        System.err.println("file: '" + file + "' : " + message);
+
+      List<Entry<String, Class<?>>> schema = result.schema();
+      long bytes = schema == null ? 0 : new File(file).length();
+      return new Result(file, schema, null, bytes, System.nanoTime() - start);
+
+    } catch (IOException ex) {
+      return new Result(file, null, ex.toString(), 0, System.nanoTime() - start);
+    }
+  }
+
+  // infers the schema of each CSV file which lands in the given directory,
+  // and prints it as soon as it's ready, until the thread is interrupted
+  private static void watch (Path directory, Options options, int nThreads, PrintStream out) {
+    try (DirectoryWatcher watcher = new DirectoryWatcher(directory, options, nThreads,
+      QUIET_MILLIS, result -> {
+        for (String message : result.diagnostics())
+          System.err.println("file: '" + result.file() + "' : " + message);
+
+        String text = format(new Result(result.file(), result.schema(), null, 0, 0), false);
+        synchronized (out) { out.print(text); out.flush(); }
+      })) {
+
+      watcher.run();
+
+    } catch (IOException ex) {
+      System.err.println("error watching directory: '" + directory + "'");
+    }
+  }
+
+  // answers requests for schemata on the given port of the loopback address,
+  // in the background, until the process is stopped
+  private static void serve (int port, Options options, PrintStream out) {
+    try {
+      SchemaServer server = new SchemaServer(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), options);
+      server.start();
+
+      InetSocketAddress address = server.address();
+      out.println("listening on http://" + address.getHostString() + ":" + address.getPort() + "/schema");
+
+    } catch (IOException ex) {
+      System.err.println("error listening on port: " + port + " : " + ex);
+    }
+  }
+
+  // formats a single result for printing, all at once
+  private static String format (Result result, boolean batch) {
+    String newline = System.lineSeparator();
+    StringBuilder sb = new StringBuilder(newline);
+
+    if (!new File(result.file).isFile())
+      sb.append("file: '").append(result.file).append("' not found").append(newline);
+
+    else if (result.error != null)
+      sb.append("error reading file: '").append(result.file).append("' : ")
+        .append(result.error).append(newline);
+
+    else if (result.schema == null)
+      sb.append("file: '").append(result.file).append("' has no schema").append(newline);
+
+    else {
+      sb.append("file: '").append(result.file).append("' schema:").append(newline).append(newline);
+      for (Entry<String, Class<?>> column : result.schema) sb.append(column).append(newline);
+    }
+
+    // per-file timing
+    if (batch) sb.append(String.format(Locale.ROOT, "(%.1f ms, %d bytes)%n",
+      result.nanos / 1e6, result.bytes));
+
+    return sb.append(newline).toString();
+  }
+
+}
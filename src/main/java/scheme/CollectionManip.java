@@ -121,50 +121,15 @@ public class CollectionManip {
     if (types == null || types.size() < 1)
       throw new IllegalStateException("narrowestCommonType() : Collection is null or empty");
 
-    // does the Collection contain these particular types?
-    boolean hasString        = types.contains(String.class);
-    if (hasString) return String.class; // String anywhere => return String
-
-    boolean hasBoolean       = types.contains(Boolean.class);
-    boolean hasByte          = types.contains(Byte.class);
-    boolean hasCharacter     = types.contains(Character.class);
-    boolean hasDouble        = types.contains(Double.class);
-    boolean hasFloat         = types.contains(Float.class);
-    boolean hasInteger       = types.contains(Integer.class);
-    boolean hasLocalDateTime = types.contains(LocalDateTime.class);
-    boolean hasLong          = types.contains(Long.class);
-    boolean hasShort         = types.contains(Short.class);
-    boolean hasObject        = types.contains(Object.class); // empty
-
-    // groups of types
-    boolean hasNumeric =
-      hasDouble || hasFloat || hasLong || hasInteger || hasShort || hasByte;
-
-    boolean hasNonNumeric =
-      hasLocalDateTime || hasCharacter || hasBoolean;
-
-    // if any numeric type and any non-numeric type, return String
-    if (hasNumeric && hasNonNumeric) return String.class;
-
-    // if any mixed non-numeric types, return String
-    if ((hasBoolean && (hasCharacter || hasLocalDateTime)) ||
-        (hasCharacter && hasLocalDateTime))
-      return String.class;
-
-    // at this point, types must only contain mixed numeric types or a single type
-         if (hasDouble)  return Double.class;  // double is widest numeric type
-    else if (hasFloat)   return Float.class;   // floating point? must use float or double
-    else if (hasLong)    return Long.class;    // wider range than Integer
-    else if (hasInteger) return Integer.class; // wider range than Short
-    else if (hasShort)   return Short.class;   // wider range than Byte
-    else if (hasByte)    return Byte.class;    // narrowest numeric type
-
-    // at this point, types must only contain a single non-numeric type
-         if (hasBoolean)       return Boolean.class;
-    else if (hasCharacter)     return Character.class;
-    else if (hasLocalDateTime) return LocalDateTime.class;
-    else if (hasObject)        return Object.class;
-    else throw new IllegalStateException("narrowestCommonType() : cannot determine type");
+    // the set of types, as TypeCodes (other classes are ignored)
+    int mask = 0;
+    for (Class<?> type : types) {
+      byte code = TypeCode.of(type);
+      if (code >= 0) mask |= 1 << code;
+    }
+
+    if (mask == 0) throw new IllegalStateException("narrowestCommonType() : cannot determine type");
+    return TypeCode.toClass(TypeCode.narrowest(mask));
 
   }
 
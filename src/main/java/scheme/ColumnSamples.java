@@ -0,0 +1,169 @@
+package scheme;
+
+import java.util.Arrays;
+
+/**
+ * The first few records of a CSV file -- the rows which are searched for the
+ * column headers -- stored column by column, in primitive arrays.
+ *
+ * <p>Each column has one buffer for the {@link TypeCode}s of its tokens, one
+ * for the date-time formats which matched them, and one for their text, so
+ * the memory used grows only with the number of tokens, and very wide files
+ * (with many thousands of columns) don't create a {@link String} or a boxed
+ * {@link Class} for every one of them. The text of a token is only turned
+ * into a {@link String} when it's asked for, i.e. for the header rows.</p>
+ */
+final class ColumnSamples {
+
+  private final int capacity;  // maximum number of rows
+  private int nRows = 0;
+  private int nColumns = 0;
+
+  // number of tokens in, and file offset of the end of, each row
+  private final int[]  rowLengths;
+  private final long[] rowEnds;
+
+  // for each column, the TypeCode of its token in each row; the index of the
+  // date-time format which matched it (-1 if none); and its text, which ends
+  // at textEnds[column][row] (and starts where the previous row's ended)
+  private byte[][] types    = new byte[16][];
+  private int[][]  formats  = new int[16][];
+  private char[][] text     = new char[16][];
+  private int[][]  textEnds = new int[16][];
+
+  /** Creates storage for up to {@code capacity} rows. */
+  ColumnSamples (int capacity) {
+    this.capacity = capacity;
+    rowLengths = new int[capacity];
+    rowEnds    = new long[capacity];
+  }
+
+  /** Returns {@code true} if no more rows can be added. */
+  boolean isFull() {
+    return nRows == capacity;
+  }
+
+  /**
+   * Types and stores every token of the {@code reader}'s current record as
+   * the next row, trying the date-time format which matched the token above
+   * each one first. Only the date-time formats in {@code formats} are
+   * recognised.
+   */
+  void add (RecordReader reader, Options options, FormatIndex formats) {
+    if (isFull()) throw new IllegalStateException("add() : no room for another row");
+
+    int row = nRows, nTokens = reader.nTokens();
+    if (nTokens > nColumns) grow(nTokens);
+
+    int[] dateFormat = new int[1];
+
+    for (int cc = 0; cc < nTokens; ++cc) {
+      CharSequence token = reader.chars(cc);
+
+      dateFormat[0] = (row > 0 && cc < rowLengths[row-1]) ? this.formats[cc][row-1] : -1;
+      types[cc][row] = StringManip.typeCode(token, 0, token.length(), options.bool01(),
+        options.commonTypes(), options.postfixFL(), options.parseDates(), formats, dateFormat);
+      this.formats[cc][row] = dateFormat[0];
+
+      // append the token's text to the column's text buffer
+      int start = textStart(cc, row), end = start + token.length();
+      if (end > text[cc].length) text[cc] = Arrays.copyOf(text[cc], Math.max(end, 2 * text[cc].length));
+      for (int ii = 0; ii < token.length(); ++ii) text[cc][start + ii] = token.charAt(ii);
+      textEnds[cc][row] = end;
+    }
+
+    // columns which this row is too short for have empty text
+    for (int cc = nTokens; cc < nColumns; ++cc) textEnds[cc][row] = textStart(cc, row);
+
+    rowLengths[row] = nTokens;
+    rowEnds[row] = reader.position();
+    ++nRows;
+  }
+
+  // makes room for (at least) 'n' columns, and allocates their buffers
+  private void grow (int n) {
+    if (n > types.length) {
+      int length = Math.max(n, 2 * types.length);
+      types    = Arrays.copyOf(types, length);
+      formats  = Arrays.copyOf(formats, length);
+      text     = Arrays.copyOf(text, length);
+      textEnds = Arrays.copyOf(textEnds, length);
+    }
+    for (int cc = nColumns; cc < n; ++cc) {
+      types[cc]    = new byte[capacity];
+      formats[cc]  = new int[capacity];
+      text[cc]     = new char[16];
+      textEnds[cc] = new int[capacity];
+    }
+    nColumns = n;
+  }
+
+  // the offset in text[column] at which the token in 'row' starts -- rows
+  // without a token in the column have empty (zero-length) text
+  private int textStart (int column, int row) {
+    return row == 0 ? 0 : textEnds[column][row-1];
+  }
+
+  /** Returns the number of rows stored. */
+  int nRows() {
+    return nRows;
+  }
+
+  /** Returns the number of tokens in the longest row. */
+  int nColumns() {
+    return nColumns;
+  }
+
+  /** Returns the file offset of the end of the given {@code row}. */
+  long rowEnd (int row) {
+    return rowEnds[row];
+  }
+
+  /** Returns the number of tokens in the given {@code row}. */
+  int rowLength (int row) {
+    return rowLengths[row];
+  }
+
+  /** Returns the text of the token in {@code column} of {@code row}, which must have one. */
+  String text (int column, int row) {
+    int start = textStart(column, row);
+    return new String(text[column], start, textEnds[column][row] - start);
+  }
+
+  /**
+   * Returns the fraction of the {@link #nColumns()} columns whose token in
+   * the given {@code row} is a {@link String} -- i.e. the
+   * {@link CollectionManip#similarity similarity()} of the row's types and a
+   * row of only {@code String}s. Rows which are shorter than the longest row
+   * aren't comparable, so their similarity is {@code 0.0}.
+   */
+  double stringSimilarity (int row) {
+    if (rowLengths[row] != nColumns || nColumns < 1) return 0.0;
+
+    int nStrings = 0;
+    for (int cc = 0; cc < nColumns; ++cc)
+      if (types[cc][row] == TypeCode.STRING) ++nStrings;
+
+    return (double) nStrings / nColumns;
+  }
+
+  /**
+   * Returns the types of every token in the rows from {@code fromRow}
+   * onwards -- and their statistics, if {@link Options#columnStats()} is set.
+   */
+  ColumnTypes types (int fromRow, Options options) {
+    ColumnTypes columnTypes = new ColumnTypes(options.columnStats());
+    StatsAccumulator stats = columnTypes.stats();
+
+    for (int rr = Math.max(0, fromRow); rr < nRows; ++rr) {
+      if (stats != null) stats.addRecord(rowLengths[rr]);
+
+      for (int cc = 0; cc < rowLengths[rr]; ++cc) {
+        columnTypes.add(cc, types[cc][rr], formats[cc][rr]);
+        if (stats != null) stats.add(cc, text(cc, rr), types[cc][rr], options.postfixFL());
+      }
+    }
+    return columnTypes;
+  }
+
+}
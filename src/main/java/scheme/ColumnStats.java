@@ -0,0 +1,115 @@
+package scheme;
+
+/**
+ * Immutable statistics of a single column of a CSV file, collected while its
+ * type is inferred, when {@link Options#columnStats()} is set; see
+ * {@link CSV#columnStats()}.
+ *
+ * <p>The statistics describe the rows which were analysed -- every row after
+ * the header rows with {@link Sampling#STREAM} or {@link Sampling#PARALLEL},
+ * but only the first few rows with {@link Sampling#HEAD}, and a sample of
+ * them with {@link Sampling#RANDOM}.</p>
+ */
+public final class ColumnStats {
+
+  private final long count;
+  private final long nullCount;
+  private final long emptyCount;
+  private final double min;
+  private final double max;
+  private final int minLength;
+  private final int maxLength;
+  private final long distinctCount;
+
+  ColumnStats (long count, long nullCount, long emptyCount, double min, double max,
+    int minLength, int maxLength, long distinctCount) {
+
+    this.count         = count;
+    this.nullCount     = nullCount;
+    this.emptyCount    = emptyCount;
+    this.min           = min;
+    this.max           = max;
+    this.minLength     = minLength;
+    this.maxLength     = maxLength;
+    this.distinctCount = distinctCount;
+  }
+
+  /**
+   * Returns the number of tokens in the column, including empty ones.
+   *
+   * @return the number of tokens in the column
+   */
+  public long count() { return count; }
+
+  /**
+   * Returns the number of analysed records which had no token at all in this
+   * column, because they had fewer tokens than other records.
+   *
+   * @return the number of missing tokens
+   */
+  public long nullCount() { return nullCount; }
+
+  /**
+   * Returns the number of empty tokens in the column (tokens which are
+   * inferred to be {@link Object}s).
+   *
+   * @return the number of empty tokens
+   */
+  public long emptyCount() { return emptyCount; }
+
+  /**
+   * Returns the smallest value in the column, if its inferred type is numeric
+   * ({@link Byte}, {@link Short}, {@link Integer}, {@link Long},
+   * {@link Float}, or {@link Double}), or {@code NaN} if it isn't, or if it
+   * contains no numbers.
+   *
+   * @return the smallest value in the column, or {@code NaN}
+   */
+  public double min() { return min; }
+
+  /**
+   * Returns the largest value in the column, if its inferred type is numeric,
+   * or {@code NaN} if it isn't, or if it contains no numbers; see
+   * {@link #min()}.
+   *
+   * @return the largest value in the column, or {@code NaN}
+   */
+  public double max() { return max; }
+
+  /**
+   * Returns the length, in {@code char}s, of the shortest non-empty token in
+   * the column (as it appears in the file, including any quotes), or 0 if
+   * there are none.
+   *
+   * @return the length of the shortest non-empty token
+   */
+  public int minLength() { return minLength; }
+
+  /**
+   * Returns the length, in {@code char}s, of the longest token in the column
+   * (as it appears in the file, including any quotes), or 0 if there are
+   * none.
+   *
+   * @return the length of the longest token
+   */
+  public int maxLength() { return maxLength; }
+
+  /**
+   * Returns the number of distinct non-empty tokens in the column. This is
+   * exact for columns with at most 128 distinct tokens; beyond that, it's
+   * estimated with a HyperLogLog sketch, to within about 1.6% (one standard
+   * error).
+   *
+   * @return the (approximate) number of distinct non-empty tokens
+   */
+  public long distinctCount() { return distinctCount; }
+
+  @Override
+  public String toString() {
+    return "ColumnStats[count=" + count + ", nullCount=" + nullCount +
+      ", emptyCount=" + emptyCount + ", min=" + min + ", max=" + max +
+      ", minLength=" + minLength + ", maxLength=" + maxLength +
+      ", distinctCount=" + distinctCount + "]";
+  }
+
+}
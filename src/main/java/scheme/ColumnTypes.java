@@ -0,0 +1,225 @@
+package scheme;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates the distinct types seen in each column of a CSV file.
+ *
+ * <p>Only the set of distinct types seen so far is kept for each column --
+ * never the individual rows -- as a single {@code int} whose bits are the
+ * {@link TypeCode}s of those types (see {@link TypeCode#narrowest(int)}), so
+ * recording each token takes constant time, and the memory used doesn't grow
+ * with the number of rows analysed. Accumulators for different parts of the
+ * same file can be merged with {@link #merge(ColumnTypes)}.</p>
+ *
+ * <p>Once the narrowest common type of a column is {@link String}, no other
+ * type can change it, so the column is "settled" and there's no need to type
+ * any more of its tokens; see {@link #isSettled(int)} and
+ * {@link #allSettled()}.</p>
+ *
+ * <p>For columns of date-times, the date-time format which matched each
+ * column is also kept, so that it can be tried first for the next token in
+ * that column (see {@link #dateFormat(int)}), and so that it can be reported
+ * with the column's type (see {@link #datePatterns(FormatIndex)}).</p>
+ *
+ * <p>If they're wanted, the {@link ColumnStats} of each column are collected
+ * alongside its type, by a {@link StatsAccumulator}; see {@link #stats()}.</p>
+ */
+final class ColumnTypes {
+
+  // distinct types seen in each column, as bits (1 << code) of TypeCodes
+  private int[] masks = new int[16];
+  private int nColumns = 0;
+
+  // which columns are settled, and how many of them there are
+  private boolean[] settled = new boolean[16];
+  private int nSettled = 0;
+
+  // index (into the FormatIndex used to type the tokens) of the format which parsed the most
+  // recent date-time in each column, and of the format which parsed all of
+  // them (NONE if there were no date-times, MIXED if they needed more than
+  // one format)
+  private int[] lastFormat = newFormats(16);
+  private int[] format     = newFormats(16);
+
+  private static final int NONE  = -1;
+  private static final int MIXED = -2;
+
+  // statistics of each column, or null if they aren't being collected
+  private StatsAccumulator stats;
+
+  /** Creates an accumulator which doesn't collect statistics. */
+  ColumnTypes() {
+    this(false);
+  }
+
+  /** Creates an accumulator which collects statistics if {@code collectStats} is set. */
+  ColumnTypes (boolean collectStats) {
+    stats = collectStats ? new StatsAccumulator() : null;
+  }
+
+  /** Returns the statistics collected alongside the types, or {@code null}. */
+  StatsAccumulator stats() {
+    return stats;
+  }
+
+  /** Records that a token of the given {@link TypeCode} was seen in {@code column}. */
+  void add (int column, byte type) {
+    add(column, type, NONE);
+  }
+
+  /**
+   * Records that a token of the given {@link TypeCode} was seen in
+   * {@code column}, which, if it's a {@link LocalDateTime}, was parsed by the
+   * {@code dateFormat}-th format in the {@link FormatIndex} used to type it.
+   */
+  void add (int column, byte type, int dateFormat) {
+    if (column >= nColumns) grow(column + 1);
+
+    if (type == TypeCode.LOCAL_DATE_TIME && dateFormat >= 0) {
+      lastFormat[column] = dateFormat;
+      format[column] = combine(format[column], dateFormat);
+    }
+
+    addMask(column, 1 << type);
+  }
+
+  // adds all of the types in 'mask' to the given (existing) column
+  private void addMask (int column, int mask) {
+    int before = masks[column];
+    masks[column] |= mask;
+
+    // the narrowest common type can only change when a new type is seen
+    if (masks[column] != before && !settled[column] &&
+        TypeCode.narrowest(masks[column]) == TypeCode.STRING) {
+      settled[column] = true;
+      ++nSettled;
+    }
+  }
+
+  // makes room for (at least) 'n' columns
+  private void grow (int n) {
+    if (n > masks.length) {
+      int length = Math.max(n, 2 * masks.length);
+      masks      = Arrays.copyOf(masks, length);
+      settled    = Arrays.copyOf(settled, length);
+      lastFormat = Arrays.copyOf(lastFormat, length);
+      format     = Arrays.copyOf(format, length);
+      Arrays.fill(lastFormat, nColumns, length, NONE);
+      Arrays.fill(format,     nColumns, length, NONE);
+    }
+    nColumns = n;
+  }
+
+  private static int[] newFormats (int length) {
+    int[] formats = new int[length];
+    Arrays.fill(formats, NONE);
+    return formats;
+  }
+
+  /** Returns {@code true} if the narrowest common type of {@code column} is {@link String}. */
+  boolean isSettled (int column) {
+    return column < nColumns && settled[column];
+  }
+
+  /** Returns {@code true} if at least one column has been seen, and all of them are settled. */
+  boolean allSettled() {
+    return nSettled > 0 && nSettled == nColumns;
+  }
+
+  /** Returns the number of columns seen so far. */
+  int size() {
+    return nColumns;
+  }
+
+  /**
+   * Returns the index of the format which parsed the most recent date-time in
+   * {@code column}, or -1 if there hasn't been one.
+   */
+  int dateFormat (int column) {
+    return column < nColumns ? lastFormat[column] : NONE;
+  }
+
+  /** Adds all of the types seen by {@code other} to this accumulator, and returns it. */
+  ColumnTypes merge (ColumnTypes other) {
+    if (other.nColumns > nColumns) grow(other.nColumns);
+
+    for (int cc = 0; cc < other.nColumns; ++cc) {
+      addMask(cc, other.masks[cc]);
+      if (other.format[cc] != NONE) {
+        format[cc] = combine(format[cc], other.format[cc]);
+        lastFormat[cc] = other.lastFormat[cc];
+      }
+    }
+
+    if (other.stats != null) stats = (stats == null) ? other.stats : stats.merge(other.stats);
+    return this;
+  }
+
+  /**
+   * Writes the types seen so far (but not the statistics) to {@code out}, so
+   * that they can be {@link #read read} back and added to later.
+   */
+  void write (DataOutputStream out) throws IOException {
+    out.writeInt(nColumns);
+    for (int cc = 0; cc < nColumns; ++cc) {
+      out.writeInt(masks[cc]);
+      out.writeInt(lastFormat[cc]);
+      out.writeInt(format[cc]);
+    }
+  }
+
+  /** Reads types written by {@link #write write()}, without any statistics. */
+  static ColumnTypes read (DataInputStream in) throws IOException {
+    ColumnTypes types = new ColumnTypes();
+    int n = in.readInt();
+    if (n < 0) throw new IOException("read() : invalid number of columns: " + n);
+    types.grow(n);
+
+    for (int cc = 0; cc < n; ++cc) {
+      types.addMask(cc, in.readInt());
+      types.lastFormat[cc] = in.readInt();
+      types.format[cc]     = in.readInt();
+    }
+    return types;
+  }
+
+  // the format which parsed all of the date-times parsed by formats a and b
+  private static int combine (int a, int b) {
+    return (a == NONE || a == b) ? b : (b == NONE) ? a : MIXED;
+  }
+
+  /**
+   * Returns the narrowest common type of each column, as found by
+   * {@link TypeCode#narrowest(int)}.
+   */
+  List<Class<?>> narrowest() {
+    List<Class<?>> types = new ArrayList<>(nColumns);
+    for (int cc = 0; cc < nColumns; ++cc) types.add(TypeCode.toClass(TypeCode.narrowest(masks[cc])));
+    return types;
+  }
+
+  /**
+   * Returns the pattern of the date-time format which parsed every date-time
+   * in each column of {@link LocalDateTime}s, or {@code null} for other
+   * columns, or for columns which needed more than one format. The formats'
+   * indices are into {@code index}, the formats which typed the columns.
+   */
+  List<String> datePatterns (FormatIndex index) {
+    List<String> patterns = new ArrayList<>(nColumns);
+
+    for (int cc = 0; cc < nColumns; ++cc) {
+      int ff = format[cc];
+      boolean isDate = TypeCode.narrowest(masks[cc]) == TypeCode.LOCAL_DATE_TIME;
+      patterns.add(isDate && 0 <= ff && ff < index.size() ? index.pattern(ff) : null);
+    }
+    return patterns;
+  }
+
+}
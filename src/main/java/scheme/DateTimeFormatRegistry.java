@@ -0,0 +1,147 @@
+package scheme;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A list of date-time formats which can be recognised while the schema of a
+ * CSV file is inferred.
+ *
+ * <p>The global registry, {@link DateTimeFormats#registry()}, holds the
+ * default formats and is used unless {@link Options#withDateFormats} says
+ * otherwise; separate registries let different inferences recognise
+ * different formats, at the same time:</p>
+ *
+ * <pre>{@code
+ * jshell> DateTimeFormatRegistry formats = DateTimeFormats.registry().copy()
+ * jshell> formats.add(Locale.US, "MMM d yyyy HH:mm")
+ * jshell> CSV.infer("example.csv", Options.defaults().withDateFormats(formats))
+ * }</pre>
+ *
+ * <p>A registry is safe to use from any number of threads. Its formats are
+ * kept in an immutable snapshot, which {@link #add add()} and
+ * {@link #remove remove()} replace with an updated copy, so reading them
+ * never locks: each inference reads the snapshot once, when it starts, and
+ * uses the same formats throughout, however the registry changes in the
+ * meantime.</p>
+ */
+public final class DateTimeFormatRegistry {
+
+  // the current formats, and their index by shape
+  private final AtomicReference<FormatIndex> snapshot;
+
+  /** Creates an empty registry, which recognises no date-time formats. */
+  public DateTimeFormatRegistry() {
+    this(new FormatIndex(Collections.emptyList(), Collections.emptyList()));
+  }
+
+  DateTimeFormatRegistry (FormatIndex snapshot) {
+    this.snapshot = new AtomicReference<>(snapshot);
+  }
+
+  /**
+   * Returns a new registry which starts with the formats currently in this
+   * one, but which can be changed independently of it.
+   *
+   * @return a copy of this registry
+   */
+  public DateTimeFormatRegistry copy() {
+    return new DateTimeFormatRegistry(snapshot.get());
+  }
+
+  /** Returns the current formats, indexed by the shapes of the tokens they can parse. */
+  FormatIndex snapshot() {
+    return snapshot.get();
+  }
+
+  /**
+   * Returns the formats in this registry, in order, as an unmodifiable list
+   * of {@link DateTimeFormatter}s. The list doesn't change if the registry
+   * does.
+   *
+   * @return the formats in this registry
+   */
+  public List<DateTimeFormatter> get() {
+    return snapshot.get().formats();
+  }
+
+  /**
+   * Returns the formats in this registry, in order, as an unmodifiable list
+   * of {@link String}s, i.e. {@code "yyyy/MM/dd HH:mm:ss"}. The list doesn't
+   * change if the registry does.
+   *
+   * @return the patterns of the formats in this registry
+   */
+  public List<String> strings() {
+    return snapshot.get().patterns();
+  }
+
+  /**
+   * Adds the specified format to the end of this registry; see
+   * {@link DateTimeFormats#add(Locale, String)}.
+   *
+   * @param locale the {@link Locale} of this date-time format
+   * @param format a {@link String} representation of this date-time format
+   * @return {@code true} if format was successfully added to the registry,
+   * {@code false} otherwise
+   */
+  public boolean add (Locale locale, String format) {
+
+    // if String is null or empty, abort
+    if (format == null || format.equals("")) {
+      System.err.println("add() : format String cannot be null or empty");
+      return false;
+    }
+
+    // if Locale is null, abort
+    if (locale == null) {
+      System.err.println("add() : locale cannot be null");
+      return false;
+    }
+
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format, locale);
+
+    // replace the snapshot with a copy which has the new format at the end,
+    // unless another thread replaced it first, in which case try again
+    FormatIndex current, updated;
+    do {
+      current = snapshot.get();
+      updated = current.plus(locale, format, formatter);
+    } while (!snapshot.compareAndSet(current, updated));
+
+    return true;
+  }
+
+  /**
+   * Removes the specified format from this registry, if it exists; see
+   * {@link DateTimeFormats#remove(int)}.
+   *
+   * @param index index of the date-time format to remove
+   * @return the removed format as a {@link DateTimeFormatter} object, wrapped
+   * in an {@link Optional}; returns an empty {@link Optional} if the index is
+   * out of range.
+   */
+  public Optional<DateTimeFormatter> remove (int index) {
+    FormatIndex current, updated;
+    DateTimeFormatter removed;
+    do {
+      current = snapshot.get();
+      if (index < 0 || index >= current.size()) return Optional.empty();
+
+      removed = current.format(index);
+      updated = current.minus(index);
+    } while (!snapshot.compareAndSet(current, updated));
+
+    return Optional.of(removed);
+  }
+
+  @Override
+  public String toString() {
+    return "DateTimeFormatRegistry" + strings();
+  }
+
+}
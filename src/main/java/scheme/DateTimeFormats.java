@@ -16,26 +16,32 @@ import java.util.Optional;
 /**
  * Utility class for working with date-time formats
  * within <em>scheme</em>.
+ *
+ * <p>These methods read and change the global
+ * {@link #registry() registry}; changes are seen by every
+ * inference which starts afterwards, unless it uses a registry of its own.</p>
  */
 public class DateTimeFormats {
 
   // * private default constructor because this is a utility class
   private DateTimeFormats(){}
 
-  // list of Date-Time format objects
-  private static List<DateTimeFormatter> formats = new ArrayList<DateTimeFormatter>(10);
+  // the global registry, which holds the default formats, plus any which are
+  // added to it -- see registry()
+  private static final DateTimeFormatRegistry registry;
 
-  // list of Date-Time format strings, i.e. "yyyy/MM/dd HH:mm:ss"
-  private static List<String> formatStrings = new ArrayList<String>(10);
-
-  // try to load the default date-time formats from src/main/resources/
+  // try to load the default date-time formats from src/main/resources/ --
+  // but don't compile them until they're needed (see FormatIndex)
   static {
+    List<Locale> locales = new ArrayList<>(16);
+    List<String> formatStrings = new ArrayList<>(16);
+
     try ( // load resource file -- cast to BufferedReader so we have readLine() method
       InputStream is = CSV.class.getClassLoader().
         getResourceAsStream("dateFormats.dat");
       InputStreamReader isr = new InputStreamReader(is, "UTF-8");
       BufferedReader file = new BufferedReader(isr)) {
-      formatAdder(file);
+      formatAdder(file, locales, formatStrings);
 
     } catch (UnsupportedEncodingException ex) {
       System.err.println("DateTimeFormats : UnsupportedEncodingException encountered while trying to register default date-time formats");
@@ -43,10 +49,14 @@ public class DateTimeFormats {
     } catch (IOException ex) {
       System.err.println("DateTimeFormats : IOException encountered while trying to register default date-time formats");
     }
+
+    registry = new DateTimeFormatRegistry(new FormatIndex(locales, formatStrings));
   }
 
-  // private helper method for and add()
-  private static boolean formatAdder (BufferedReader file) {
+  // private helper method for the static initialiser: reads formats from the
+  // file into the given lists
+  private static boolean formatAdder (BufferedReader file,
+    List<Locale> locales, List<String> formatStrings) {
 
     // no null files allowed
     if (file == null) return false;
@@ -83,9 +93,9 @@ public class DateTimeFormats {
         // second part is format, which is surrounded by quotes
         String format = line.substring(line.indexOf('"')+1, line.length()-1);
 
-        // add new DateTimeFormatter to formats list
+        // add new format to formats list (it's compiled when it's first needed)
         formatStrings.add(format);
-        formats.add(DateTimeFormatter.ofPattern(format, locale));
+        locales.add(locale);
 
       } // end while()
 
@@ -97,6 +107,19 @@ public class DateTimeFormats {
     return true;
   }
 
+  /**
+   * Returns the global registry of date-time formats, which holds the
+   * default formats, and which is changed by {@link #add(Locale, String)} and
+   * {@link #remove(int)}. It's used by every inference whose {@link Options}
+   * don't name another registry; see
+   * {@link Options#withDateFormats(DateTimeFormatRegistry)}.
+   *
+   * @return the global registry of date-time formats
+   */
+  public static DateTimeFormatRegistry registry() {
+    return registry;
+  }
+
   /**
    * Returns all known date-time formats as an
    * {@link Collections#unmodifiableList unmodifiableList} of
@@ -107,7 +130,7 @@ public class DateTimeFormats {
    *
    */
   public static List<DateTimeFormatter> get() {
-    return Collections.unmodifiableList(formats);
+    return registry.get();
   }
 
   /**
@@ -120,7 +143,15 @@ public class DateTimeFormats {
    *
    */
   public static List<String> strings() {
-    return Collections.unmodifiableList(formatStrings);
+    return registry.strings();
+  }
+
+  /**
+   * Returns an index of the known date-time formats, by the shapes of the
+   * tokens they can parse.
+   */
+  static FormatIndex index() {
+    return registry.snapshot();
   }
 
   /**
@@ -137,23 +168,7 @@ public class DateTimeFormats {
    * recognised formats, {@code false} otherwise
    */
   public static boolean add (Locale locale, String format) {
-
-    // if String is null or empty, abort
-    if (format == null || format.equals("")) {
-      System.err.println("add() : format String cannot be null or empty");
-      return false;
-    }
-
-    // if Locale is null, abort
-    if (locale == null) {
-      System.err.println("add() : locale cannot be null");
-      return false;
-    }
-
-    // add new DateTimeFormatter to formats list
-    formatStrings.add(format);
-    formats.add(DateTimeFormatter.ofPattern(format, locale));
-    return true;
+    return registry.add(locale, format);
   }
 
   /**
@@ -177,13 +192,7 @@ public class DateTimeFormats {
    * currently-recognized date-time formats
    */
   public static Optional<DateTimeFormatter> remove (int index) {
-    if (index < 0 || index >= formats.size()) { return Optional.empty(); }
-    else {
-      Optional<DateTimeFormatter> retval = Optional.of(formats.get(index));
-      formats.remove(index);
-      formatStrings.remove(index);
-      return retval;
-    }
+    return registry.remove(index);
   }
 
-}
\ No newline at end of file
+}
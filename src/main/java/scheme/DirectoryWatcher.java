@@ -0,0 +1,243 @@
+package scheme;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a directory, and infers the schema of each CSV file which lands in
+ * it, as soon as the file has been completely written.
+ *
+ * <pre>{@code
+ * jshell> DirectoryWatcher watcher = new DirectoryWatcher(Paths.get("landing"),
+ *    ...>   Options.defaults(), 4, 1000, result -> System.out.println(result))
+ * jshell> new Thread(watcher).start()
+ * }</pre>
+ *
+ * <p>Files whose names end in {@code .csv} (in any case) are noticed through
+ * a {@link WatchService} when they're created or modified -- along with any
+ * which are already in the directory when the watcher starts. Files are
+ * usually written a piece at a time, though, so a file is only analysed once
+ * its size and modification time have stayed the same for a "quiet period";
+ * if it changes again later, it's analysed again, once it's settled. Schemata
+ * are inferred on a pool of worker threads, so a long-running process can
+ * handle any number of files without starting a new JVM for each of them, and
+ * each {@link SchemaResult} is passed to the listener as soon as it's ready
+ * (on the worker thread, so the listener must be thread-safe). Files which
+ * can't be read are reported on the standard error stream.</p>
+ *
+ * <p>Only the directory itself is watched, not its subdirectories.</p>
+ */
+public final class DirectoryWatcher implements Runnable, Closeable {
+
+  private final Path directory;
+  private final Options options;
+  private final long quietNanos;
+  private final Consumer<? super SchemaResult> listener;
+
+  private final WatchService watchService;
+  private final ExecutorService pool;
+  private volatile boolean closed = false;
+
+  // the size and modification time of a file when it was last looked at
+  private static final class Snapshot {
+    final long size, modified;
+
+    Snapshot (BasicFileAttributes attributes) {
+      size = attributes.size();
+      modified = attributes.lastModifiedTime().toMillis();
+    }
+
+    boolean sameAs (Snapshot other) {
+      return other != null && size == other.size && modified == other.modified;
+    }
+  }
+
+  // files which may still be being written: when each was last seen to
+  // change (System.nanoTime()), and what it looked like then
+  private final Map<Path, Long> lastChange = new HashMap<>();
+  private final Map<Path, Snapshot> pending = new HashMap<>();
+
+  // what each file looked like when it was last analysed
+  private final Map<Path, Snapshot> analysed = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a watcher of the given {@code directory}, which starts watching
+   * when it's {@link #run()}.
+   *
+   * @param directory the directory to watch
+   * @param options the options which control how schemata are inferred
+   * @param nThreads the number of worker threads on which schemata are inferred
+   * @param quietMillis the number of milliseconds for which a file must stay
+   * the same before it's analysed
+   * @param listener receives the result for each file, as soon as it's ready
+   * @throws IOException if the directory can't be watched
+   * @throws IllegalArgumentException if {@code nThreads} is less than 1, or
+   * {@code quietMillis} is negative
+   */
+  public DirectoryWatcher (Path directory, Options options, int nThreads,
+    long quietMillis, Consumer<? super SchemaResult> listener) throws IOException {
+
+    if (nThreads < 1)
+      throw new IllegalArgumentException("DirectoryWatcher() : nThreads must be at least 1");
+    if (quietMillis < 0)
+      throw new IllegalArgumentException("DirectoryWatcher() : quietMillis cannot be negative");
+
+    this.directory  = directory;
+    this.options    = options;
+    this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+    this.listener   = listener;
+
+    watchService = directory.getFileSystem().newWatchService();
+    try {
+      directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException | RuntimeException ex) {
+      watchService.close();
+      throw ex;
+    }
+
+    pool = Executors.newFixedThreadPool(nThreads, runnable -> {
+      Thread thread = new Thread(runnable, "scheme-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Watches the directory, and analyses the files which land in it, until
+   * the watcher is {@link #close() closed} or the thread is interrupted.
+   */
+  @Override
+  public void run() {
+    scan(); // the files which are already there
+
+    // check on files which may still be being written a few times per quiet period
+    long tick = Math.max(10, Math.min(TimeUnit.NANOSECONDS.toMillis(quietNanos) / 4, 250));
+
+    try {
+      while (!closed) {
+        WatchKey key = watchService.poll(tick, TimeUnit.MILLISECONDS);
+
+        if (key != null) {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) scan(); // some events were lost
+            else changed(directory.resolve((Path) event.context()));
+          }
+          if (!key.reset()) break; // the directory is gone
+        }
+
+        submitSettled();
+      }
+
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+
+    } catch (ClosedWatchServiceException ex) {
+      // closed while waiting for events
+    }
+  }
+
+  // treats every CSV file in the directory as if it had just changed
+  private void scan() {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) changed(file);
+    } catch (IOException ex) {
+      System.err.println("error reading directory: '" + directory + "'");
+    }
+  }
+
+  // notes that the given file may have changed, and what it looks like now
+  private void changed (Path file) {
+    if (!file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) return;
+    lastChange.put(file, System.nanoTime());
+    pending.put(file, snapshot(file));
+  }
+
+  // the size and modification time of the given file, or null if it isn't
+  // a regular file (any more)
+  private static Snapshot snapshot (Path file) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return attributes.isRegularFile() ? new Snapshot(attributes) : null;
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  // submits the pending files which have stayed the same for the quiet
+  // period, and forgets those which have gone
+  private void submitSettled() {
+    long now = System.nanoTime();
+
+    for (Iterator<Map.Entry<Path, Long>> it = lastChange.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Path, Long> entry = it.next();
+      if (now - entry.getValue() < quietNanos) continue;
+
+      // deleted, or moved away
+      Path file = entry.getKey();
+      Snapshot snapshot = snapshot(file);
+      if (snapshot == null) { it.remove(); pending.remove(file); continue; }
+
+      // it changed during the quiet period (without telling us): wait again
+      Snapshot before = pending.put(file, snapshot);
+      if (!snapshot.sameAs(before)) { entry.setValue(now); continue; }
+
+      it.remove(); pending.remove(file);
+      if (!snapshot.sameAs(analysed.get(file))) submit(file, snapshot);
+    }
+  }
+
+  // infers the schema of the given file on the pool, and passes it on
+  private void submit (Path file, Snapshot snapshot) {
+    analysed.put(file, snapshot);
+
+    pool.execute(() -> {
+      try {
+        listener.accept(CSV.infer(file.toString(), options));
+
+      } catch (FileNotFoundException | NoSuchFileException ex) {
+        analysed.remove(file); // gone before it could be read
+
+      } catch (IOException ex) {
+        System.err.println("error reading file: '" + file + "' : " + ex);
+      }
+    });
+  }
+
+  /**
+   * Stops watching the directory, and waits for the files which are already
+   * being analysed to be finished (and passed to the listener).
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    watchService.close();
+    pool.shutdown();
+    try {
+      pool.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+package scheme;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The character encoding of a CSV file, and the length of the byte order
+ * mark (BOM) which precedes its first record, if it has one.
+ *
+ * <p>The encoding is worked out once, from the first few bytes of the file,
+ * before any records are read:</p>
+ *
+ * <ul>
+ *   <li>a UTF-8, UTF-16 or UTF-32 byte order mark gives the encoding away;</li>
+ *   <li>otherwise, if the first 64kB of the file are valid UTF-8 (which
+ *       includes plain ASCII), it's UTF-8;</li>
+ *   <li>otherwise, it's the platform's default {@link Charset} (as used by
+ *       {@link java.io.FileReader}), unless that's UTF-8, in which case it's
+ *       ISO-8859-1, which can decode any sequence of bytes.</li>
+ * </ul>
+ *
+ * <p>Only encodings in which every ASCII character is a single byte of the
+ * same value -- i.e. not UTF-16 or UTF-32 -- can be read by
+ * {@link RecordReader}, which splits records and tokens on the raw bytes of
+ * the file, and decodes only the tokens which contain non-ASCII bytes.</p>
+ */
+final class Encoding {
+
+  // number of bytes at the start of the file which are checked for UTF-8
+  private static final int SAMPLE_SIZE = 1 << 16;
+
+  /** The encoding of the file. */
+  final Charset charset;
+
+  /** The length of the file's byte order mark, or 0 if it doesn't have one. */
+  final int bomLength;
+
+  private Encoding (Charset charset, int bomLength) {
+    this.charset   = charset;
+    this.bomLength = bomLength;
+  }
+
+  /** Works out the encoding of the file read by the given {@code channel}. */
+  static Encoding detect (FileChannel channel) throws IOException {
+
+    ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE_SIZE, channel.size()));
+    while (sample.hasRemaining())
+      if (channel.read(sample, sample.position()) < 0) break;
+    byte[] bytes = sample.array();
+    int length = sample.position();
+
+    // byte order marks -- UTF-32LE's begins with UTF-16LE's, so check it first
+    if (startsWith(bytes, length, 0xEF, 0xBB, 0xBF))   return new Encoding(StandardCharsets.UTF_8, 3);
+    if (startsWith(bytes, length, 0x00, 0x00, 0xFE, 0xFF)) return new Encoding(Charset.forName("UTF-32BE"), 4);
+    if (startsWith(bytes, length, 0xFF, 0xFE, 0x00, 0x00)) return new Encoding(Charset.forName("UTF-32LE"), 4);
+    if (startsWith(bytes, length, 0xFE, 0xFF))         return new Encoding(StandardCharsets.UTF_16BE, 2);
+    if (startsWith(bytes, length, 0xFF, 0xFE))         return new Encoding(StandardCharsets.UTF_16LE, 2);
+
+    // no byte order mark -- is it UTF-8?
+    if (isUtf8(bytes, length, length < channel.size())) return new Encoding(StandardCharsets.UTF_8, 0);
+
+    Charset platform = Charset.defaultCharset();
+    return new Encoding(platform.equals(StandardCharsets.UTF_8) ?
+      StandardCharsets.ISO_8859_1 : platform, 0);
+  }
+
+  /**
+   * Returns {@code true} if every ASCII character is encoded by the given
+   * {@code charset} as a single byte of the same value, so that records and
+   * tokens can be split on the raw bytes of a file.
+   */
+  static boolean isAsciiCompatible (Charset charset) {
+    byte[] ascii = new byte[128];
+    for (int ii = 0; ii < ascii.length; ++ii) ascii[ii] = (byte) ii;
+
+    String decoded = new String(ascii, charset);
+    if (decoded.length() != ascii.length) return false;
+    for (int ii = 0; ii < ascii.length; ++ii) if (decoded.charAt(ii) != ii) return false;
+    return true;
+  }
+
+  // returns true if bytes[0, length) starts with the given (unsigned) bytes
+  private static boolean startsWith (byte[] bytes, int length, int... prefix) {
+    if (length < prefix.length) return false;
+    for (int ii = 0; ii < prefix.length; ++ii)
+      if ((bytes[ii] & 0xFF) != prefix[ii]) return false;
+    return true;
+  }
+
+  // returns true if bytes[0, length) is valid UTF-8 -- or would be, if it
+  // weren't 'truncated' part-way through the last character
+  private static boolean isUtf8 (byte[] bytes, int length, boolean truncated) {
+
+    for (int ii = 0; ii < length; ) {
+      int b = bytes[ii] & 0xFF;
+
+      // ASCII
+      if (b < 0x80) { ++ii; continue; }
+
+      // the number of continuation bytes, and the range of the first of
+      // them, which rules out overlong encodings, surrogates, and code points
+      // beyond U+10FFFF
+      int nn, min = 0x80, max = 0xBF;
+      if      (b < 0xC2) return false;
+      else if (b < 0xE0) nn = 1;
+      else if (b < 0xF0) { nn = 2; if (b == 0xE0) min = 0xA0; else if (b == 0xED) max = 0x9F; }
+      else if (b < 0xF5) { nn = 3; if (b == 0xF0) min = 0x90; else if (b == 0xF4) max = 0x8F; }
+      else return false;
+
+      for (int cc = 1; cc <= nn; ++cc) {
+        if (ii + cc >= length) return truncated;
+        int next = bytes[ii + cc] & 0xFF;
+        if (next < (cc == 1 ? min : 0x80) || next > (cc == 1 ? max : 0xBF)) return false;
+      }
+      ii += nn + 1;
+    }
+
+    return true;
+  }
+
+}
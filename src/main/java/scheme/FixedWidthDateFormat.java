@@ -0,0 +1,200 @@
+package scheme;
+
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parser for date-time patterns made up of only fixed-width numeric fields
+ * and literals, like {@code "yyyy-MM-dd HH:mm:ss"} or
+ * {@code "dd/MM/yyyy HH:mm"}, which checks each field at a fixed offset
+ * instead of going through {@link DateTimeFormatter}'s general parser.
+ *
+ * <p>Patterns may contain {@code yyyy} or {@code uuuu} (year), {@code MM}
+ * (month), {@code dd} (day of month), {@code HH} (hour of day), {@code mm}
+ * (minute), optionally {@code ss} (second) and, after that, {@code S} to
+ * {@code SSSSSSSSS} (fraction of second), each at most once, and any
+ * non-letter or quoted literals. {@link #compile(String)} returns
+ * {@code null} for any other pattern.</p>
+ *
+ * <p>{@link #match(CharSequence)} only gives a definite answer when
+ * {@link DateTimeFormatter#ofPattern(String) DateTimeFormatter.ofPattern()}
+ * would certainly give the same one; for anything unusual -- years with a
+ * sign or of year zero, {@code 24:00}, or days which don't exist in their
+ * month, which the default {@link java.time.format.ResolverStyle#SMART SMART}
+ * resolver may adjust -- it returns {@link #MAYBE}, and the text should be
+ * parsed with the {@link DateTimeFormatter} instead.</p>
+ */
+final class FixedWidthDateFormat {
+
+  /** {@link #match(CharSequence)} results. */
+  static final int NO = 0, YES = 1, MAYBE = 2;
+
+  // the kinds of characters in a pattern
+  private static final char DIGIT = 0, LITERAL = 1;
+
+  // kind of each character of a matching date-time; and, for literals, the
+  // character itself
+  private final char[] kinds;
+  private final char[] literals;
+
+  // offsets of each field, -1 if absent; and the width of the fraction
+  private final int year, month, day, hour, minute, second, fraction, nFractionDigits;
+  private final boolean yearOfEra;
+
+  private FixedWidthDateFormat (char[] kinds, char[] literals, int[] offsets,
+    int nFractionDigits, boolean yearOfEra) {
+
+    this.kinds    = kinds;
+    this.literals = literals;
+    this.year     = offsets[0];  this.month  = offsets[1];
+    this.day      = offsets[2];  this.hour   = offsets[3];
+    this.minute   = offsets[4];  this.second = offsets[5];
+    this.fraction = offsets[6];
+    this.nFractionDigits = nFractionDigits;
+    this.yearOfEra = yearOfEra;
+  }
+
+  /**
+   * Returns a parser for the given {@link DateTimeFormatter} {@code pattern},
+   * or {@code null} if it isn't made up of only the fields listed above.
+   */
+  static FixedWidthDateFormat compile (String pattern) {
+
+    StringBuilder kinds = new StringBuilder(), literals = new StringBuilder();
+    int[] offsets = { -1, -1, -1, -1, -1, -1, -1 };
+    int nFractionDigits = 0;
+    boolean yearOfEra = false;
+
+    for (int ii = 0; ii < pattern.length(); ) {
+      char c = pattern.charAt(ii);
+
+      // quoted literal, with '' for a single quote
+      if (c == '\'') {
+        int end = ii + 1;
+        if (end < pattern.length() && pattern.charAt(end) == '\'') {
+          kinds.append(LITERAL); literals.append('\''); ii += 2; continue;
+        }
+        for (; end < pattern.length(); ++end) {
+          if (pattern.charAt(end) != '\'') {
+            kinds.append(LITERAL); literals.append(pattern.charAt(end));
+          } else if (end + 1 < pattern.length() && pattern.charAt(end + 1) == '\'') {
+            kinds.append(LITERAL); literals.append('\''); ++end;
+          } else break;
+        }
+        if (end == pattern.length()) return null; // unterminated
+        ii = end + 1;
+        continue;
+      }
+
+      // reserved characters -- optional sections, etc.
+      if (c == '[' || c == ']' || c == '{' || c == '}' || c == '#') return null;
+
+      // other non-letters are literals
+      if (!(('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z'))) {
+        kinds.append(LITERAL); literals.append(c); ++ii;
+        continue;
+      }
+
+      // a run of the same pattern letter is a field
+      int width = 1;
+      while (ii + width < pattern.length() && pattern.charAt(ii + width) == c) ++width;
+
+      int field;
+      switch (c) {
+        case 'y': field = 0; if (width != 4) return null; yearOfEra = true; break;
+        case 'u': field = 0; if (width != 4) return null; break;
+        case 'M': field = 1; if (width != 2) return null; break;
+        case 'd': field = 2; if (width != 2) return null; break;
+        case 'H': field = 3; if (width != 2) return null; break;
+        case 'm': field = 4; if (width != 2) return null; break;
+        case 's': field = 5; if (width != 2) return null; break;
+        case 'S': field = 6; if (width > 9) return null; nFractionDigits = width; break;
+        default: return null;
+      }
+
+      if (offsets[field] >= 0) return null; // each field at most once
+      offsets[field] = kinds.length();
+
+      for (int ww = 0; ww < width; ++ww) { kinds.append(DIGIT); literals.append('0'); }
+      ii += width;
+    }
+
+    // a LocalDateTime needs a date and an hour and minute; fractions of a
+    // second need a second
+    for (int field = 0; field < 5; ++field) if (offsets[field] < 0) return null;
+    if (offsets[6] >= 0 && offsets[5] < 0) return null;
+
+    return new FixedWidthDateFormat(kinds.toString().toCharArray(),
+      literals.toString().toCharArray(), offsets, nFractionDigits, yearOfEra);
+  }
+
+  /**
+   * Returns {@link #YES} if the given {@code text} is a valid date-time in
+   * this format, {@link #NO} if it certainly isn't, or {@link #MAYBE} if the
+   * {@link DateTimeFormatter} has to decide.
+   */
+  int match (CharSequence text) {
+    return match(text, 0, text.length());
+  }
+
+  /** Works just like {@link #match(CharSequence)}, but only for {@code text[start, end)}. */
+  int match (CharSequence text, int start, int end) {
+    int length = end - start, nn = kinds.length;
+
+    // the year is the only field which can be wider -- but only with a sign
+    if (length != nn) {
+      if (length < nn || year + 1 > length) return NO;
+      char sign = text.charAt(start + year);
+      return (sign == '+' || sign == '-') ? MAYBE : NO;
+    }
+
+    for (int ii = 0; ii < nn; ++ii) {
+      char c = text.charAt(start + ii);
+      if (kinds[ii] == DIGIT ? (c < '0' || c > '9') : c != literals[ii])
+        return (ii == year && (c == '+' || c == '-')) ? MAYBE : NO;
+    }
+
+    int y = digits(text, start + year, 4), M = digits(text, start + month, 2);
+    int d = digits(text, start + day, 2), H = digits(text, start + hour, 2);
+    int m = digits(text, start + minute, 2);
+    int s = (second < 0) ? 0 : digits(text, start + second, 2);
+
+    // the SMART resolver turns 24:00 into midnight, and clamps days which
+    // don't exist in their month (but not days after the 31st)
+    if (H == 24 || (y == 0 && yearOfEra)) return MAYBE;
+    if (M < 1 || M > 12 || d < 1 || d > 31 || H > 23 || m > 59 || s > 59) return NO;
+    if (d > 28 && d > lengthOfMonth(y, M)) return MAYBE;
+
+    return YES;
+  }
+
+  /** Returns the date-time represented by {@code text}, which must {@link #match match}. */
+  LocalDateTime parse (CharSequence text) {
+    int nano = 0;
+    if (fraction >= 0) {
+      nano = digits(text, fraction, nFractionDigits);
+      for (int ii = nFractionDigits; ii < 9; ++ii) nano *= 10;
+    }
+
+    return LocalDateTime.of(digits(text, year, 4), digits(text, month, 2),
+      digits(text, day, 2), digits(text, hour, 2), digits(text, minute, 2),
+      (second < 0) ? 0 : digits(text, second, 2), nano);
+  }
+
+  // the value of the 'width' ASCII digits at 'offset'
+  private static int digits (CharSequence text, int offset, int width) {
+    int value = 0;
+    for (int ii = offset; ii < offset + width; ++ii) value = 10 * value + (text.charAt(ii) - '0');
+    return value;
+  }
+
+  private static int lengthOfMonth (int year, int month) {
+    switch (month) {
+      case 2: return Year.isLeap(year) ? 29 : 28;
+      case 4: case 6: case 9: case 11: return 30;
+      default: return 31;
+    }
+  }
+
+}
@@ -0,0 +1,448 @@
+package scheme;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable index from the "shape" of a token to the date-time formats which
+ * could possibly parse it.
+ *
+ * <p>The shape of a {@link CharSequence} is found by replacing each run of
+ * digits with a single {@code '9'} and each run of letters with a single
+ * {@code 'a'}, keeping every other character as-is, so {@code "2020-01-05
+ * 12:00:00"} has the shape {@code "9-9-9 9:9:9"} and {@code "05 Jan 2020"}
+ * has the shape {@code "9 a 9"}. A format's shapes are found by formatting a
+ * range of sample date-times with it: every month, every day of the week and
+ * every hour of the day (for formats which include names of months or days,
+ * AM / PM markers, etc.), as well as years with more than four digits and
+ * years before year 1.</p>
+ *
+ * <p>Formats whose shapes can't be found this way -- formats which need a
+ * time zone, which {@link LocalDateTime} doesn't have, or formats with
+ * optional sections or padding -- are candidates for every token. All
+ * candidates are returned in their original order, so the first format which
+ * parses a token is the same one that would be found by trying every format
+ * in turn.</p>
+ *
+ * <p>Nothing is compiled up front: each {@link DateTimeFormatter} is only
+ * compiled when it's first needed, and the shapes are only found the first
+ * time a token which could be a date-time is looked up. Only tokens which
+ * contain a digit can be -- every {@link LocalDateTime} has a year, which is
+ * always written in digits -- so files without any such tokens never need
+ * the formats at all. Finding the shapes of formats with localised text
+ * (names of months, AM / PM markers, etc.) means loading the locale's text,
+ * which takes longer than inferring the schema of a small file, so at first
+ * those formats are treated as if their shapes were unknown; their shapes
+ * are only found once enough tokens have been looked up to make it
+ * worthwhile.</p>
+ */
+final class FormatIndex {
+
+  // the formats' patterns and locales, in their original order, and the
+  // formats themselves, each of which is compiled when it's first needed
+  private final List<String> patterns;
+  private final List<Locale> locales;
+  private final AtomicReferenceArray<DateTimeFormatter> formats;
+
+  // faster parsers for the formats which have them (null for the others)
+  private final FixedWidthDateFormat[] fixedWidth;
+
+  // the table of shapes, which is built when it's first needed; and a
+  // cheaper one, which leaves out the formats with localised text, and which
+  // is used instead for the first few lookups (which are only counted
+  // roughly, as threads may race to count them)
+  private volatile Shapes table, numericTable;
+  private int numericLookups;
+
+  private static final int NUMERIC_LOOKUPS = 1000;
+
+  // indices of the candidate formats for each shape, in an open-addressing
+  // hash table (so that a token's shape can be looked up without building it
+  // as a String); and the indices of the formats whose shapes are unknown
+  // (which are also included in every array in the table)
+  private static final class Shapes {
+    final String[] keys;
+    final int[] hashes;
+    final int[][] candidates;
+    final int[] opaque;
+
+    Shapes (String[] keys, int[] hashes, int[][] candidates, int[] opaque) {
+      this.keys = keys; this.hashes = hashes;
+      this.candidates = candidates; this.opaque = opaque;
+    }
+  }
+
+  private static final int[] NONE = new int[0];
+
+  // the calendar fields which the text in a format can depend on, and any
+  // other text (such as eras) -- see textFields()
+  private static final int MONTHS = 1, DAYS = 2, HOURS = 4, OTHER = 8,
+    ANY = MONTHS | DAYS | HOURS | OTHER;
+
+  /**
+   * Indexes the formats with the given {@code patterns}, in the given
+   * {@code locales}. The patterns are not compiled until they're needed.
+   */
+  FormatIndex (List<Locale> locales, List<String> patterns) {
+    this(locales, patterns, new DateTimeFormatter[patterns.size()]);
+  }
+
+  // ...and with any formats which have already been compiled (or null)
+  private FormatIndex (List<Locale> locales, List<String> patterns, DateTimeFormatter[] compiled) {
+    this.locales  = Collections.unmodifiableList(new ArrayList<>(locales));
+    this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+    this.formats  = new AtomicReferenceArray<>(compiled);
+
+    fixedWidth = new FixedWidthDateFormat[this.patterns.size()];
+    for (int ii = 0; ii < fixedWidth.length; ++ii)
+      fixedWidth[ii] = FixedWidthDateFormat.compile(this.patterns.get(ii));
+  }
+
+  /**
+   * Returns a new index which also has the given (already compiled)
+   * {@code format} at the end.
+   */
+  FormatIndex plus (Locale locale, String pattern, DateTimeFormatter format) {
+    List<Locale> newLocales = new ArrayList<>(locales);
+    List<String> newPatterns = new ArrayList<>(patterns);
+    newLocales.add(locale);
+    newPatterns.add(pattern);
+
+    DateTimeFormatter[] compiled = compiled(size() + 1);
+    compiled[size()] = format;
+    return new FormatIndex(newLocales, newPatterns, compiled);
+  }
+
+  /** Returns a new index without the {@code index}-th format. */
+  FormatIndex minus (int index) {
+    List<Locale> newLocales = new ArrayList<>(locales);
+    List<String> newPatterns = new ArrayList<>(patterns);
+    newLocales.remove(index);
+    newPatterns.remove(index);
+
+    DateTimeFormatter[] compiled = compiled(size());
+    System.arraycopy(compiled, index + 1, compiled, index, size() - index - 1);
+    return new FormatIndex(newLocales, newPatterns, Arrays.copyOf(compiled, size() - 1));
+  }
+
+  // the formats which have been compiled so far (null for the others), so
+  // that a new index doesn't have to compile them again
+  private DateTimeFormatter[] compiled (int length) {
+    DateTimeFormatter[] compiled = new DateTimeFormatter[length];
+    for (int ii = 0; ii < size(); ++ii) compiled[ii] = formats.get(ii);
+    return compiled;
+  }
+
+  // finds the shapes which each format can produce, and indexes them -- but
+  // unless 'text' is set, formats with localised text are left out, and are
+  // candidates for every token, just like the formats whose shapes are unknown
+  //
+  // (this runs in a fresh JVM when the CLI is given a small file, so it
+  // sticks to loops and BitSets, rather than starting up streams and lambdas)
+  private Shapes index (boolean text) {
+    Map<String, BitSet> shapes = new HashMap<>();
+    BitSet unknown = new BitSet();
+
+    for (int ii = 0; ii < size(); ++ii) {
+      Set<String> formatShapes = (text || textFields(patterns.get(ii)) == 0) ?
+        shapes(format(ii), patterns.get(ii)) : null;
+      if (formatShapes == null) { unknown.set(ii); continue; }
+
+      for (String shape : formatShapes) {
+        BitSet indices = shapes.get(shape);
+        if (indices == null) shapes.put(shape, indices = new BitSet());
+        indices.set(ii);
+      }
+    }
+
+    int[] opaque = toArray(unknown);
+
+    // merge the opaque formats into each shape's candidates, in order, and
+    // add them to a table which is at most half full
+    int capacity = Integer.highestOneBit(Math.max(1, shapes.size())) * 4;
+    String[] keys       = new String[capacity];
+    int[]    hashes     = new int[capacity];
+    int[][]  candidates = new int[capacity][];
+
+    for (Map.Entry<String, BitSet> entry : shapes.entrySet()) {
+      BitSet indices = entry.getValue();
+      indices.or(unknown);
+
+      int hash = entry.getKey().hashCode(), slot = hash & (capacity - 1);
+      while (keys[slot] != null) slot = (slot + 1) & (capacity - 1);
+      keys[slot]       = entry.getKey();
+      hashes[slot]     = hash;
+      candidates[slot] = toArray(indices);
+    }
+
+    return new Shapes(keys, hashes, candidates, opaque);
+  }
+
+  // the indices in the given set, in order
+  private static int[] toArray (BitSet indices) {
+    int[] array = new int[indices.cardinality()];
+    for (int ii = 0, index = indices.nextSetBit(0); index >= 0; index = indices.nextSetBit(index + 1))
+      array[ii++] = index;
+    return array;
+  }
+
+  // the table of shapes (or the cheaper one, unless 'text' is set), which
+  // is built by the first thread which needs it
+  private Shapes shapes (boolean text) {
+    Shapes shapes = text ? table : numericTable;
+    if (shapes != null) return shapes;
+
+    synchronized (this) {
+      if (table == null && text) table = index(true);
+      if (table != null) return table;
+      if (numericTable == null) numericTable = index(false);
+      return numericTable;
+    }
+  }
+
+  /**
+   * Compiles every format and finds their shapes now, rather than when
+   * they're first needed, and returns this index.
+   */
+  FormatIndex prepare() {
+    shapes(true);
+    return this;
+  }
+
+  /** Returns the number of indexed formats. */
+  int size() {
+    return patterns.size();
+  }
+
+  /**
+   * Returns the indexed formats, in order, as an unmodifiable list --
+   * compiling any which haven't been compiled yet.
+   */
+  List<DateTimeFormatter> formats() {
+    List<DateTimeFormatter> list = new ArrayList<>(size());
+    for (int ii = 0; ii < size(); ++ii) list.add(format(ii));
+    return Collections.unmodifiableList(list);
+  }
+
+  /** Returns the patterns of the indexed formats, in order, as an unmodifiable list. */
+  List<String> patterns() {
+    return patterns;
+  }
+
+  /** Returns the {@code index}-th format, compiling it if it hasn't been already. */
+  DateTimeFormatter format (int index) {
+    DateTimeFormatter format = formats.get(index);
+    if (format == null) {
+      // threads which race to compile the same format compile identical ones
+      format = DateTimeFormatter.ofPattern(patterns.get(index), locales.get(index));
+      formats.set(index, format);
+    }
+    return format;
+  }
+
+  /** Returns the locale of the {@code index}-th format. */
+  Locale locale (int index) {
+    return locales.get(index);
+  }
+
+  /** Returns the pattern of the {@code index}-th format. */
+  String pattern (int index) {
+    return patterns.get(index);
+  }
+
+  /**
+   * Returns a faster parser for the {@code index}-th format, or {@code null}
+   * if it doesn't have one.
+   */
+  FixedWidthDateFormat fixedWidth (int index) {
+    return fixedWidth[index];
+  }
+
+  /**
+   * Returns the indices of the formats which could parse the given
+   * {@code token}, in their original order. Do not modify the returned array.
+   */
+  int[] candidates (CharSequence token) {
+    return candidates(token, 0, token.length());
+  }
+
+  /**
+   * Works just like {@link #candidates(CharSequence)}, but only for
+   * {@code text[start, end)}, and without creating any objects.
+   */
+  int[] candidates (CharSequence text, int start, int end) {
+
+    // the shape's String.hashCode(), without building the shape
+    int hash = 0;
+    char last = 0;
+    boolean digits = false;
+    for (int ii = start; ii < end; ++ii) {
+      char c = shapeOf(text.charAt(ii));
+      if (c != last || (c != '9' && c != 'a')) hash = 31 * hash + c;
+      if (c == '9') digits = true;
+      last = c;
+    }
+
+    // no year, so it can't be a date-time -- and there's no need for the table
+    if (!digits) return NONE;
+
+    Shapes shapes = table;
+    if (shapes == null) shapes = shapes(++numericLookups > NUMERIC_LOOKUPS);
+
+    int mask = shapes.keys.length - 1;
+    for (int slot = hash & mask; shapes.keys[slot] != null; slot = (slot + 1) & mask)
+      if (shapes.hashes[slot] == hash && hasShape(text, start, end, shapes.keys[slot]))
+        return shapes.candidates[slot];
+
+    return shapes.opaque.length > 0 ? shapes.opaque : NONE;
+  }
+
+  // returns true if text[start, end) has the given shape
+  private static boolean hasShape (CharSequence text, int start, int end, String shape) {
+    int length = 0;
+    char last = 0;
+    for (int ii = start; ii < end; ++ii) {
+      char c = shapeOf(text.charAt(ii));
+      if (c != last || (c != '9' && c != 'a')) {
+        if (length == shape.length() || shape.charAt(length) != c) return false;
+        ++length;
+      }
+      last = c;
+    }
+    return length == shape.length();
+  }
+
+  // the character which stands for c in a shape -- which stands for a run of
+  // such characters, if it's a '9' or an 'a'
+  private static char shapeOf (char c) {
+    return Character.isDigit(c) ? '9' : Character.isLetter(c) ? 'a' : c;
+  }
+
+  /** Returns the shape of the given {@code text} (see above). */
+  static String shape (CharSequence text) {
+    StringBuilder sb = new StringBuilder(text.length());
+    char last = 0;
+
+    for (int ii = 0; ii < text.length(); ++ii) {
+      char c = shapeOf(text.charAt(ii));
+      if (c != last || (c != '9' && c != 'a')) sb.append(c);
+      last = c;
+    }
+
+    return sb.toString();
+  }
+
+  // returns all of the shapes produced by the given format, or null if they
+  // can't be found by formatting sample date-times
+  private static Set<String> shapes (DateTimeFormatter format, String pattern) {
+
+    // optional sections and padding may be skipped when parsing
+    if (pattern.indexOf('[') >= 0 || pattern.indexOf('p') >= 0) return null;
+
+    Set<String> shapes = new LinkedHashSet<>();
+
+    try {
+      // an ordinary date-time, and ones with unusual years
+      for (int year : new int[]{ 2020, 10000, -1 })
+        shapes.add(shape(format.format(LocalDateTime.of(year, 1, 1, 0, 0))));
+
+      // if the format has any text at all, try every month, day and hour --
+      // or rather, those which its text depends on, as the shapes of the
+      // numbers don't depend on any of them
+      boolean hasText = false;
+      for (String shape : shapes) hasText |= shape.indexOf('a') >= 0;
+
+      if (hasText) {
+        int fields = textFields(pattern);
+        int months = (fields & MONTHS) != 0 ? 12 : 1;
+        int days   = (fields & DAYS)   != 0 ?  7 : 1;
+        int hours  = (fields & HOURS)  != 0 ? 24 : 1;
+
+        LocalDateTime dateTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int month = 0; month < months; ++month)
+          for (int day = 0; day < days; ++day)
+            for (int hour = 0; hour < hours; ++hour)
+              shapes.add(shape(format.format(
+                dateTime.plusMonths(month).plusDays(day).plusHours(hour))));
+      }
+
+    } catch (RuntimeException ex) {
+      return null; // e.g. the format needs a time zone
+    }
+
+    return shapes;
+  }
+
+  // returns the calendar fields which the text produced by the given pattern
+  // depends on: MONTHS for the names of months (and quarters), DAYS for the
+  // names of days of the week, HOURS for AM / PM markers and periods of the
+  // day, and OTHER for eras -- or ANY, for anything else, to be safe; 0 if
+  // the pattern only has numbers (and quoted literals)
+  private static int textFields (String pattern) {
+    int fields = 0;
+
+    for (int ii = 0; ii < pattern.length(); ) {
+      char c = pattern.charAt(ii);
+
+      // skip quoted literals ('' is a single quote, which also works here)
+      if (c == '\'') {
+        int end = pattern.indexOf('\'', ii + 1);
+        ii = (end < 0) ? pattern.length() : end + 1;
+        continue;
+      }
+
+      if (!(('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z'))) { ++ii; continue; }
+
+      // a run of the same pattern letter is a field
+      int width = 1;
+      while (ii + width < pattern.length() && pattern.charAt(ii + width) == c) ++width;
+      ii += width;
+
+      switch (c) {
+        // numbers
+        case 'u': case 'y': case 'Y': case 'D': case 'd': case 'w': case 'W':
+        case 'F': case 'g': case 'H': case 'h': case 'k': case 'K': case 'm':
+        case 's': case 'S': case 'n': case 'N': case 'A':
+          break;
+
+        // eras, which the sample years already cover
+        case 'G':
+          fields |= OTHER;
+          break;
+
+        // numbers, or names of months, quarters and days of the week
+        case 'M': case 'L': case 'Q': case 'q':
+          if (width >= 3) fields |= MONTHS;
+          break;
+        case 'e': case 'c':
+          if (width >= 3) fields |= DAYS;
+          break;
+        case 'E':
+          fields |= DAYS;
+          break;
+
+        // AM / PM, and periods of the day
+        case 'a': case 'B':
+          fields |= HOURS;
+          break;
+
+        default:
+          return ANY;
+      }
+    }
+
+    return fields;
+  }
+
+}
@@ -0,0 +1,129 @@
+package scheme;
+
+/**
+ * Sketch which estimates the number of distinct tokens in a column, in
+ * constant memory, using the HyperLogLog algorithm (Flajolet et al., 2007).
+ *
+ * <p>Each token is hashed to 64 bits. The first {@value #P} bits pick one of
+ * 4096 registers, which keeps the longest run of leading zeros seen in the
+ * rest of the bits of any hash that picked it, and the estimate is a
+ * (bias-corrected) harmonic mean of those registers, with a relative standard
+ * error of about 1.6%. Columns with only a few distinct tokens -- which is
+ * most of them -- keep their hashes in a small set instead, so that the
+ * estimate is exact and the 4kB of registers is only allocated when it's
+ * needed. Sketches of different parts of a file can be merged with
+ * {@link #merge(HyperLogLog)}.</p>
+ */
+final class HyperLogLog {
+
+  // number of bits of the hash which pick a register, and number of registers
+  private static final int P = 12;
+  private static final int M = 1 << P;
+
+  // hashes are kept exactly until there are more than this many distinct ones
+  private static final int MAX_EXACT = 128;
+
+  // distinct hashes, in an open-addressing table where 0 is an empty slot
+  // (and a hash of 0 is kept by 'hasZero'), or null once there are registers
+  private long[] exact = new long[8];
+  private int nExact = 0;
+  private boolean hasZero = false;
+
+  private byte[] registers;
+
+  /** Adds the given {@code token} to the sketch. */
+  void add (CharSequence token) {
+    addHash(hash(token));
+  }
+
+  private void addHash (long hash) {
+    if (registers != null) { addToRegisters(hash); return; }
+
+    if (hash == 0) { hasZero = true; return; }
+
+    int mask = exact.length - 1, slot = (int) hash & mask;
+    for (; exact[slot] != 0; slot = (slot + 1) & mask)
+      if (exact[slot] == hash) return;
+    exact[slot] = hash;
+
+    // keep the table at most half full, until it's time for registers
+    if (++nExact > MAX_EXACT) toRegisters();
+    else if (2 * nExact > exact.length) rehash(2 * exact.length);
+  }
+
+  private void rehash (int capacity) {
+    long[] old = exact;
+    exact = new long[capacity];
+    nExact = 0;
+    for (long hash : old) if (hash != 0) addHash(hash);
+  }
+
+  private void toRegisters() {
+    registers = new byte[M];
+    for (long hash : exact) if (hash != 0) addToRegisters(hash);
+    if (hasZero) addToRegisters(0);
+    exact = null;
+  }
+
+  private void addToRegisters (long hash) {
+    int index = (int) (hash >>> (64 - P));
+    byte rank = (byte) (Long.numberOfLeadingZeros((hash << P) | (1L << (P - 1))) + 1);
+    if (rank > registers[index]) registers[index] = rank;
+  }
+
+  /** Adds every token seen by {@code other} to this sketch, and returns it. */
+  HyperLogLog merge (HyperLogLog other) {
+    if (other.registers == null) {
+      for (long hash : other.exact) if (hash != 0) addHash(hash);
+      if (other.hasZero) addHash(0);
+
+    } else {
+      if (registers == null) toRegisters();
+      for (int ii = 0; ii < M; ++ii)
+        if (other.registers[ii] > registers[ii]) registers[ii] = other.registers[ii];
+    }
+    return this;
+  }
+
+  /** Returns the (estimated) number of distinct tokens added to the sketch. */
+  long estimate() {
+    if (registers == null) return nExact + (hasZero ? 1 : 0);
+
+    double sum = 0.0;
+    int nZeros = 0;
+    for (byte rank : registers) {
+      sum += 1.0 / (1L << rank);
+      if (rank == 0) ++nZeros;
+    }
+
+    double alpha = 0.7213 / (1.0 + 1.079 / M);
+    double estimate = alpha * M * M / sum;
+
+    // small cardinalities are estimated better by counting empty registers
+    if (estimate <= 2.5 * M && nZeros > 0) estimate = M * Math.log((double) M / nZeros);
+
+    return Math.round(estimate);
+  }
+
+  /**
+   * Returns a 64-bit hash of the given {@code token}: FNV-1a over its
+   * {@code char}s, followed by a final avalanche step, so that every bit of
+   * the hash depends on every bit of the token.
+   */
+  static long hash (CharSequence token) {
+    long hash = 0xcbf29ce484222325L;
+    for (int ii = 0; ii < token.length(); ++ii) hash = (hash ^ token.charAt(ii)) * 0x100000001b3L;
+    return mix(hash);
+  }
+
+  // MurmurHash3's 64-bit finalizer
+  private static long mix (long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+}
@@ -0,0 +1,332 @@
+package scheme;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable set of options which control how
+ * {@link CSV#schema(String, Options) schema()} infers the schema of a CSV
+ * file.
+ *
+ * <p>Start from {@link #defaults()} and change only the options you need;
+ * each {@code with...()} method returns a new {@code Options} object and
+ * leaves the original untouched:</p>
+ *
+ * <pre>{@code
+ * jshell> Options options = Options.defaults().withSampling(Sampling.PARALLEL).withBool01(true)
+ * jshell> CSV.schema("example.csv", options)
+ * }</pre>
+ */
+public final class Options {
+
+  private final Sampling sampling;
+  private final int firstHeaderRowIndex;
+  private final int lastHeaderRowIndex;
+  private final int nTestRows;
+  private final int sampleSize;
+  private final boolean bool01;
+  private final boolean commonTypes;
+  private final boolean postfixFL;
+  private final boolean parseDates;
+  private final boolean columnStats;
+  private final DateTimeFormatRegistry dateFormats; // null for the global registry
+
+  private Options (Sampling sampling,
+    int firstHeaderRowIndex, int lastHeaderRowIndex, int nTestRows, int sampleSize,
+    boolean bool01, boolean commonTypes, boolean postfixFL, boolean parseDates,
+    boolean columnStats, DateTimeFormatRegistry dateFormats) {
+
+    this.sampling            = sampling;
+    this.firstHeaderRowIndex = firstHeaderRowIndex;
+    this.lastHeaderRowIndex  = lastHeaderRowIndex;
+    this.nTestRows           = nTestRows;
+    this.sampleSize          = sampleSize;
+    this.bool01              = bool01;
+    this.commonTypes         = commonTypes;
+    this.postfixFL           = postfixFL;
+    this.parseDates          = parseDates;
+    this.columnStats         = columnStats;
+    this.dateFormats         = dateFormats;
+  }
+
+  private static final Options DEFAULTS =
+    new Options(Sampling.HEAD, -1, -1, 35, 1000, false, false, false, true, false, null);
+
+  /**
+   * Returns the default options, which are the ones used by
+   * {@link CSV#schema(String) schema(String)}.
+   *
+   * <p>By default, only the first rows of the file are analysed
+   * ({@link Sampling#HEAD}), the header rows are inferred, {@code nTestRows} is
+   * 35, {@code sampleSize} is 1000, and {@code bool01}, {@code commonTypes}, {@code postfixFL}, and
+   * {@code parseDates} are {@code false}, {@code false}, {@code false}, and
+   * {@code true}, respectively. Column statistics aren't collected, and
+   * date-time formats are those of the global
+   * {@link DateTimeFormats#registry() registry}.</p>
+   *
+   * @return the default options
+   */
+  public static Options defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns the strategy used to choose which rows are analysed.
+   *
+   * @return the strategy used to choose which rows are analysed
+   */
+  public Sampling sampling() { return sampling; }
+
+  /**
+   * Returns the fixed row / line index (0-based) of the beginning of the column
+   * header region, or -1 if it should be inferred.
+   *
+   * @return the first header row index
+   */
+  public int firstHeaderRowIndex() { return firstHeaderRowIndex; }
+
+  /**
+   * Returns the fixed row / line index (0-based) of the end of the column
+   * header region, or -1 if it should be inferred.
+   *
+   * @return the last header row index
+   */
+  public int lastHeaderRowIndex() { return lastHeaderRowIndex; }
+
+  /**
+   * Returns the number of rows to analyse for determining the types of data
+   * held within each column.
+   *
+   * @return the number of rows to analyse
+   */
+  public int nTestRows() { return nTestRows; }
+
+  /**
+   * Returns the number of records picked from across the file by
+   * {@link Sampling#RANDOM}.
+   *
+   * @return the number of randomly-sampled records
+   */
+  public int sampleSize() { return sampleSize; }
+
+  /**
+   * Returns {@code true} if {@code '0'} and {@code '1'} are interpreted as
+   * {@code boolean}s.
+   *
+   * @return the {@code bool01} flag
+   */
+  public boolean bool01() { return bool01; }
+
+  /**
+   * Returns {@code true} if inferred classes are restricted to {@link Boolean},
+   * {@link String}, {@link Double}, and {@link LocalDateTime}.
+   *
+   * @return the {@code commonTypes} flag
+   */
+  public boolean commonTypes() { return commonTypes; }
+
+  /**
+   * Returns {@code true} if explicit {@code float}s and {@code long}s (i.e.
+   * {@code "1.1F"} or {@code "13l"}) are interpreted as such.
+   *
+   * @return the {@code postfixFL} flag
+   */
+  public boolean postfixFL() { return postfixFL; }
+
+  /**
+   * Returns {@code true} if date-time-formatted {@link String}s are interpreted
+   * as {@link LocalDateTime}s.
+   *
+   * @return the {@code parseDates} flag
+   */
+  public boolean parseDates() { return parseDates; }
+
+  /**
+   * Returns {@code true} if the {@link ColumnStats} of each column are
+   * collected while the schema is inferred; see {@link CSV#columnStats()}.
+   *
+   * @return the {@code columnStats} flag
+   */
+  public boolean columnStats() { return columnStats; }
+
+  /**
+   * Returns the registry of the date-time formats which are recognised when
+   * {@link #parseDates()} is set.
+   *
+   * @return the registry of date-time formats -- by default, the global
+   * {@link DateTimeFormats#registry() registry}
+   */
+  public DateTimeFormatRegistry dateFormats() {
+    return dateFormats == null ? DateTimeFormats.registry() : dateFormats;
+  }
+
+  /**
+   * Returns a copy of these options with the given {@code sampling} strategy.
+   *
+   * @param sampling the strategy used to choose which rows are analysed
+   * @return a copy of these options with the given {@code sampling} strategy
+   * @throws IllegalArgumentException if {@code sampling} is {@code null}
+   */
+  public Options withSampling (Sampling sampling) {
+    if (sampling == null)
+      throw new IllegalArgumentException("withSampling() : sampling cannot be null");
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options with the given fixed header row extents.
+   *
+   * <p>If either index is invalid (for instance, -1), the header rows will be
+   * inferred instead.</p>
+   *
+   * @param firstHeaderRowIndex a fixed row / line index (0-based) for the
+   * beginning of the column header region
+   * @param lastHeaderRowIndex a fixed row / line index (0-based) for the end
+   * of the column header region
+   * @return a copy of these options with the given header row extents
+   */
+  public Options withHeaderRows (int firstHeaderRowIndex, int lastHeaderRowIndex) {
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options with the given number of test rows.
+   *
+   * @param nTestRows the number of rows to analyse for determining the types
+   * of data held within each column
+   * @return a copy of these options with the given number of test rows
+   */
+  public Options withTestRows (int nTestRows) {
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options with the given random sample size.
+   *
+   * @param sampleSize the number of records picked from across the file by
+   * {@link Sampling#RANDOM}
+   * @return a copy of these options with the given random sample size
+   * @throws IllegalArgumentException if {@code sampleSize} is less than 1
+   */
+  public Options withSampleSize (int sampleSize) {
+    if (sampleSize < 1)
+      throw new IllegalArgumentException("withSampleSize() : sampleSize must be at least 1");
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options with the given {@code bool01} flag.
+   *
+   * @param bool01 if {@code true}, {@code '0'} and {@code '1'} are interpreted
+   * as {@code boolean}s
+   * @return a copy of these options with the given {@code bool01} flag
+   */
+  public Options withBool01 (boolean bool01) {
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options with the given {@code commonTypes} flag.
+   *
+   * @param commonTypes if {@code true}, the returned class will only be one of
+   * four "common" classes -- {@link Boolean}, {@link String}, {@link Double},
+   * and {@link LocalDateTime}
+   * @return a copy of these options with the given {@code commonTypes} flag
+   */
+  public Options withCommonTypes (boolean commonTypes) {
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options with the given {@code postfixFL} flag.
+   *
+   * @param postfixFL if {@code true}, explicit {@code float}s and {@code long}s
+   * (i.e. {@code "1.1F"} or {@code "13l"}) will be interpreted, otherwise,
+   * they're interpreted as {@link String}s
+   * @return a copy of these options with the given {@code postfixFL} flag
+   */
+  public Options withPostfixFL (boolean postfixFL) {
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options with the given {@code parseDates} flag.
+   *
+   * @param parseDates if {@code true}, date-time-formatted {@code String}s will
+   * be interpreted as {@link LocalDateTime}s, otherwise, they'll be left as
+   * {@link String}s
+   * @return a copy of these options with the given {@code parseDates} flag
+   */
+  public Options withParseDates (boolean parseDates) {
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options with the given {@code columnStats} flag.
+   *
+   * <p>Statistics are collected from every token of every row which is
+   * analysed, so with {@link Sampling#STREAM} or {@link Sampling#PARALLEL},
+   * the whole file is always read -- even after every column's type has been
+   * found to be {@link String}, which otherwise stops the analysis early.</p>
+   *
+   * @param columnStats if {@code true}, the {@link ColumnStats} of each
+   * column are collected, and returned by {@link CSV#columnStats()}
+   * @return a copy of these options with the given {@code columnStats} flag
+   */
+  public Options withColumnStats (boolean columnStats) {
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a copy of these options which recognise the date-time formats in
+   * the given registry, instead of those in the global
+   * {@link DateTimeFormats#registry() registry}.
+   *
+   * <p>The formats are read once, when an inference starts, so changing the
+   * registry doesn't affect inferences which are already running.</p>
+   *
+   * @param dateFormats the registry of date-time formats to recognise
+   * @return a copy of these options with the given registry of date-time
+   * formats
+   * @throws IllegalArgumentException if {@code dateFormats} is {@code null}
+   */
+  public Options withDateFormats (DateTimeFormatRegistry dateFormats) {
+    if (dateFormats == null)
+      throw new IllegalArgumentException("withDateFormats() : dateFormats cannot be null");
+    return new Options(sampling, firstHeaderRowIndex, lastHeaderRowIndex,
+      nTestRows, sampleSize, bool01, commonTypes, postfixFL, parseDates, columnStats, dateFormats);
+  }
+
+  /**
+   * Returns a hash of every option which can change an inferred schema
+   * (everything but {@link #columnStats()}), including the date-time formats
+   * (and their locales) which are currently recognised.
+   */
+  long fingerprint() {
+    StringBuilder key = new StringBuilder(withColumnStats(false).withDateFormats(dateFormats()).toString());
+    FormatIndex formats = dateFormats().snapshot();
+    for (int ii = 0; ii < formats.size(); ++ii) // without compiling them
+      key.append('\n').append(formats.locale(ii)).append(' ').append(formats.pattern(ii));
+    return HyperLogLog.hash(key);
+  }
+
+  @Override
+  public String toString() {
+    return "Options[sampling=" + sampling +
+      ", headerRows=" + firstHeaderRowIndex + ".." + lastHeaderRowIndex +
+      ", nTestRows=" + nTestRows + ", sampleSize=" + sampleSize +
+      ", bool01=" + bool01 +
+      ", commonTypes=" + commonTypes + ", postfixFL=" + postfixFL +
+      ", parseDates=" + parseDates + ", columnStats=" + columnStats +
+      ", dateFormats=" + (dateFormats == null ? "global" : dateFormats.strings()) + "]";
+  }
+
+}
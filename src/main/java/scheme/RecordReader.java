@@ -0,0 +1,534 @@
+package scheme;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads CSV records directly from memory-mapped windows of a file.
+ *
+ * <p>The file is mapped into memory one window at a time, so files of any
+ * size (including files larger than 2GB) can be read. (Windows smaller than
+ * 1MB, i.e. at the end of the file, or of small files, are simply read into a
+ * reusable buffer instead.) Each call to
+ * {@link #next()} scans the bytes of a single record exactly once, recording
+ * the start and end of each of its tokens within the current window. Tokens
+ * are only decoded when they are asked for -- into {@link String}s, or, with
+ * {@link #chars(int)}, into a reusable buffer.</p>
+ *
+ * <p>Runs of bytes which can't end a token or a record are skipped eight bytes
+ * at a time, using the kernels in {@link Swar}.</p>
+ *
+ * <p>Records are split on line breaks ({@code "\n"}, {@code "\r\n"}, or a
+ * lone {@code '\r'}, as {@link java.io.BufferedReader#readLine()} splits
+ * lines) which are not enclosed in double-quotes, so quoted tokens may span
+ * multiple lines. Tokens are split on commas
+ * which are not enclosed in double-quotes. Leading spaces are stripped from
+ * each token, but surrounding double-quotes are kept, just as they appear in
+ * the file.</p>
+ */
+final class RecordReader implements Closeable {
+
+  // default size of each memory-mapped window of the file (64MB)
+  static final int WINDOW_SIZE = 1 << 26;
+
+  // largest window we can map (a MappedByteBuffer is indexed by an int)
+  private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+
+  // windows smaller than this (1MB) are cheaper to read() than to map
+  private static final int MIN_MAPPED_SIZE = 1 << 20;
+
+  private final FileChannel channel;
+  private final boolean ownsChannel;
+  private final Charset charset;
+  private final long size;   // size of the file, in bytes
+  private final long limit;  // no records which start at or after this offset are read
+  private final int windowSize;
+
+  private ByteBuffer window;
+  private long windowStart;  // file offset of the first byte of the window
+  private int windowLength;  // number of bytes in the window
+
+  private long position;     // file offset of the start of the next record
+  private long recordStart;  // file offset of the start of the current record
+  private boolean terminated; // did the current record end with a line break?
+
+  // window indices of the start (inclusive) and end (exclusive) of each token
+  private int   nTokens = 0;
+  private int[] tokenStarts = new int[16];
+  private int[] tokenEnds   = new int[16];
+
+  // reusable buffer for decoding tokens
+  private byte[] scratch = new byte[64];
+  private ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+
+  // reusable buffer for decoding tokens without creating Strings; a decoder
+  // (created when it's first needed) for tokens which aren't pure ASCII; and
+  // whether ASCII bytes can be decoded by just widening them to chars
+  private final Chars chars = new Chars();
+  private CharBuffer charBuffer = CharBuffer.wrap(chars.chars);
+  private CharsetDecoder decoder;
+  private final boolean asciiCompatible;
+
+  // the first 'length' chars of a reusable array -- a CharBuffer would do,
+  // but its charAt() is noticeably slower
+  private static final class Chars implements CharSequence {
+    char[] chars = new char[64];
+    int length;
+
+    @Override public int length() { return length; }
+    @Override public char charAt (int index) { return chars[index]; }
+    @Override public CharSequence subSequence (int start, int end) { return new String(chars, start, end - start); }
+    @Override public String toString() { return new String(chars, 0, length); }
+  }
+
+  /**
+   * Reads records from {@code start} (which should be the start of a record)
+   * up to, but not including, the first record which starts at or after
+   * {@code limit}. The last record may extend beyond {@code limit}.
+   */
+  RecordReader (FileChannel channel, boolean ownsChannel, Charset charset,
+    long start, long limit, int windowSize) throws IOException {
+
+    this.channel     = channel;
+    this.ownsChannel = ownsChannel;
+    this.charset     = charset;
+    this.size        = channel.size();
+    this.limit       = Math.min(limit, this.size);
+    this.windowSize  = windowSize;
+    this.position    = start;
+    this.recordStart = start;
+    this.asciiCompatible = Encoding.isAsciiCompatible(charset);
+  }
+
+  // opens the given file for reading, as FileInputStream would
+  static FileChannel openChannel (String file) throws FileNotFoundException, IOException {
+    try {
+      return FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+    } catch (NoSuchFileException ex) {
+      throw new FileNotFoundException(file);
+    }
+  }
+
+  /**
+   * Opens the given {@code file} and reads all of its records, decoding tokens
+   * with the file's {@link Encoding}, and skipping its byte order mark, if it
+   * has one.
+   *
+   * @throws UnsupportedEncodingException if the file is encoded in UTF-16 or
+   * UTF-32, whose records can't be split on their raw bytes
+   */
+  static RecordReader open (String file) throws FileNotFoundException, IOException {
+    FileChannel channel = openChannel(file);
+
+    try {
+      Encoding encoding = Encoding.detect(channel);
+      if (!Encoding.isAsciiCompatible(encoding.charset))
+        throw new UnsupportedEncodingException(encoding.charset.name());
+
+      return new RecordReader(channel, true, encoding.charset,
+        encoding.bomLength, Long.MAX_VALUE, WINDOW_SIZE);
+
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Counts the {@code '\n'} characters in the file read by the given
+   * {@code channel}, one memory-mapped window at a time.
+   */
+  static long countNewlines (FileChannel channel) throws IOException {
+    return count(channel, 0, channel.size(), '\n');
+  }
+
+  /**
+   * Counts the bytes equal to {@code b} within {@code [from, to)} of the file
+   * read by the given {@code channel}, one memory-mapped window at a time.
+   */
+  static long count (FileChannel channel, long from, long to, char b) throws IOException {
+
+    long count = 0;
+
+    for (long start = from; start < to; start += WINDOW_SIZE) {
+      int length = (int) Math.min(WINDOW_SIZE, to - start);
+      ByteBuffer window = window(channel, start, length, null);
+      count += Swar.count(window, 0, length, b);
+      unmap(window);
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns a CRC-32 checksum of the first {@code length} bytes of the file
+   * read by the given {@code channel}, or -1 if it's shorter than that.
+   */
+  static long checksum (FileChannel channel, long length) throws IOException {
+    CRC32 crc = new CRC32();
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Math.max(length, 1), 1 << 16));
+
+    for (long position = 0; position < length; ) {
+      buffer.clear().limit((int) Math.min(buffer.capacity(), length - position));
+      int n = channel.read(buffer, position);
+      if (n < 0) return -1;
+      buffer.flip();
+      crc.update(buffer);
+      position += n;
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Returns the file offset of the first record which starts within
+   * {@code [from, to)}, given whether or not {@code from} is {@code inQuotes}
+   * (i.e. whether an odd number of double-quotes precede it in its record).
+   * Returns {@code to} if no record starts within that range.
+   */
+  static long nextRecordStart (FileChannel channel, long from, long to,
+    boolean inQuotes) throws IOException {
+
+    // a record starts right at 'from' if it follows an unquoted line break
+    if (from == 0) return 0;
+    if (!inQuotes && endsRecord(channel, from - 1)) return from;
+
+    // otherwise, it starts just after the next unquoted line break
+    for (long start = from; start < to; start += WINDOW_SIZE) {
+      int length = (int) Math.min(WINDOW_SIZE, to - start);
+      ByteBuffer window = window(channel, start, length, null);
+
+      try {
+        for (int ii = Swar.nextStructural(window, 0, length, inQuotes); ii < length;
+                 ii = Swar.nextStructural(window, ii + 1, length, inQuotes)) {
+          byte b = window.get(ii);
+          if (b == '"') inQuotes = !inQuotes;
+          else if (b == '\n' || (b == '\r' && (ii + 1 < length ?
+            window.get(ii + 1) != '\n' : endsRecord(channel, start + ii)))) return start + ii + 1;
+        }
+      } finally {
+        unmap(window);
+      }
+    }
+
+    return to;
+  }
+
+  // is the (unquoted) byte at 'offset' a line break which ends a record --
+  // a '\n', or a '\r' which isn't followed by a '\n'?
+  private static boolean endsRecord (FileChannel channel, long offset) throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate(2);
+    int n = channel.read(bytes, offset);
+    if (n < 1) return false;
+    byte b = bytes.get(0);
+    return b == '\n' || (b == '\r' && (n < 2 || bytes.get(1) != '\n'));
+  }
+
+  /**
+   * Moves the reader to the given file offset, so that the next call to
+   * {@link #next()} reads from there. The current window is kept, in case it
+   * still contains {@code start}.
+   */
+  void seek (long start) {
+    position    = start;
+    recordStart = start;
+    nTokens     = 0;
+  }
+
+  /**
+   * Reads the next record, returning {@code false} if there are no more
+   * records to read.
+   */
+  boolean next() throws IOException {
+
+    // no more records in this file (or in the range we were asked to read)
+    if (position >= limit) return false;
+
+    // map the window which contains the start of this record
+    if (window == null || position < windowStart || position >= windowStart + windowLength)
+      map(position, windowSize);
+
+    // if the record runs off the end of the window, map a new window starting
+    // at the beginning of the record (a bigger one, if it didn't fit) and retry
+    while (!scan()) {
+      if (windowStart == position) {
+        if (windowLength >= MAX_WINDOW_SIZE)
+          throw new IOException("record at offset " + position + " is too long");
+        map(position, (int) Math.min(2L * windowLength, MAX_WINDOW_SIZE));
+      } else map(position, windowSize);
+    }
+
+    return true;
+  }
+
+  // maps 'length' bytes of the file (or as many as remain) starting at 'start'
+  private void map (long start, int length) throws IOException {
+    if (window != null) unmap(window);
+    windowStart  = start;
+    windowLength = (int) Math.min(length, size - start);
+    window = window(channel, windowStart, windowLength, heap);
+    if (!window.isDirect()) heap = window;
+  }
+
+  // buffer reused for windows which are read, rather than mapped
+  private ByteBuffer heap;
+
+  // returns a little-endian (for Swar) window of 'length' bytes of the file,
+  // starting at 'start'; small windows are read into 'reuse', if it's big enough
+  private static ByteBuffer window (FileChannel channel, long start, int length,
+    ByteBuffer reuse) throws IOException {
+
+    // large windows are mapped straight into memory...
+    if (length >= MIN_MAPPED_SIZE) return channel.map(
+      FileChannel.MapMode.READ_ONLY, start, length).order(ByteOrder.LITTLE_ENDIAN);
+
+    // ...while small ones are just read
+    ByteBuffer buffer = (reuse != null && reuse.capacity() >= length) ? reuse :
+      ByteBuffer.allocate(Math.max(length, 4096)).order(ByteOrder.LITTLE_ENDIAN);
+
+    buffer.clear().limit(length);
+    while (buffer.hasRemaining())
+      if (channel.read(buffer, start + buffer.position()) < 0)
+        throw new IOException("file was truncated while being read");
+
+    return buffer;
+  }
+
+  // reflective handles for unmapping windows (null if they're unavailable)
+  private static final Object   UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null; Method invokeCleaner = null;
+
+    try { // Java 9+ -- sun.misc.Unsafe.invokeCleaner(ByteBuffer)
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      unsafe = null; invokeCleaner = null; // Java 8 -- see unmap()
+    }
+
+    UNSAFE = unsafe; INVOKE_CLEANER = invokeCleaner;
+  }
+
+  // Mapped windows are normally only unmapped when they're garbage collected,
+  // so a process which reads many files can run out of address space (or map
+  // areas) long before the GC runs. So we unmap each window as soon as we're
+  // done with it, if the JVM lets us. This is safe because a window never
+  // escapes from the RecordReader which mapped it.
+  private static void unmap (ByteBuffer buffer) {
+    if (!(buffer instanceof MappedByteBuffer)) return;
+
+    try {
+      if (INVOKE_CLEANER != null) INVOKE_CLEANER.invoke(UNSAFE, buffer);
+
+      else { // Java 8 -- ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+        Method getCleaner = buffer.getClass().getMethod("cleaner");
+        getCleaner.setAccessible(true);
+        Object cleaner = getCleaner.invoke(buffer);
+        if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      // couldn't unmap it -- leave it to the garbage collector
+    }
+  }
+
+  // scans the record starting at 'position'; returns false if it doesn't fit
+  // within the current window (and the window doesn't reach the end of file)
+  private boolean scan() {
+
+    int ii = (int) (position - windowStart);
+    int nn = windowLength;
+
+    boolean inQuotes = false;      // are we between a pair of double-quotes?
+    boolean atTokenStart = true;   // have we only seen spaces in this token?
+    int tokenStart = ii;
+
+    nTokens = 0;
+    recordStart = position;
+
+    for (; ii < nn; ++ii) {
+
+      // skip any spaces at the start of a token
+      if (atTokenStart) {
+        if (window.get(ii) == ' ') { tokenStart = ii + 1; continue; }
+        atTokenStart = false;
+      }
+
+      // jump, eight bytes at a time, to the next byte which matters
+      ii = Swar.nextStructural(window, ii, nn, inQuotes);
+      if (ii == nn) break;
+      byte b = window.get(ii);
+
+      // an escaped quote ("") toggles twice, so it never ends a quoted token
+      if (b == '"') inQuotes = !inQuotes;
+
+      // a comma outside of quotes ends the current token
+      else if (b == ',') {
+        addToken(tokenStart, ii);
+        tokenStart = ii + 1;
+        atTokenStart = true;
+
+      // a line break outside of quotes ends the current record -- but a '\r'
+      // followed by a '\n' is left for the '\n' to end (and endRecord() to drop)
+      } else {
+        if (b == '\r') {
+          if (ii + 1 < nn) { if (window.get(ii + 1) == '\n') continue; }
+          else if (windowStart + nn < size) return false;
+        }
+        endRecord(tokenStart, ii);
+        position = windowStart + ii + 1;
+        terminated = true;
+        return true;
+      }
+    }
+
+    // the record has run off the end of the window
+    if (windowStart + nn < size) return false;
+
+    // ...but if that's the end of the file, it's also the end of the record
+    endRecord(tokenStart, nn);
+    position = size;
+    terminated = false;
+    return true;
+  }
+
+  // ends the last token of the record, dropping any trailing '\r'
+  private void endRecord (int tokenStart, int end) {
+    int recordEnd = end;
+    if (recordEnd > (int) (recordStart - windowStart) && window.get(recordEnd - 1) == '\r') --recordEnd;
+
+    // blank lines contain no tokens at all
+    if (recordEnd == (int) (recordStart - windowStart)) { nTokens = 0; return; }
+    addToken(Math.min(tokenStart, recordEnd), recordEnd);
+  }
+
+  private void addToken (int start, int end) {
+    if (nTokens == tokenStarts.length) {
+      int[] starts = new int[2 * nTokens]; System.arraycopy(tokenStarts, 0, starts, 0, nTokens);
+      int[] ends   = new int[2 * nTokens]; System.arraycopy(tokenEnds,   0, ends,   0, nTokens);
+      tokenStarts = starts; tokenEnds = ends;
+    }
+    tokenStarts[nTokens] = start;
+    tokenEnds[nTokens]   = end;
+    ++nTokens;
+  }
+
+  /** Returns the {@link Charset} which tokens are decoded with. */
+  Charset charset() { return charset; }
+
+  /** Returns the number of tokens in the current record. */
+  int nTokens() { return nTokens; }
+
+  /** Returns the file offset of the first byte of the current record. */
+  long recordStart() { return recordStart; }
+
+  /** Returns the file offset of the first byte after the current record. */
+  long position() { return position; }
+
+  /**
+   * Returns {@code true} if the current record ended with a line break which
+   * isn't enclosed in double-quotes, or {@code false} if it ran into the end
+   * of the file instead (perhaps in the middle of a quoted token).
+   */
+  boolean terminated() { return terminated; }
+
+  /** Decodes the {@code index}-th token of the current record. */
+  String token (int index) {
+    int start = tokenStarts[index], length = tokenEnds[index] - start;
+    if (length > scratch.length) {
+      scratch = new byte[Math.max(length, 2 * scratch.length)];
+      scratchBuffer = ByteBuffer.wrap(scratch);
+    }
+    for (int ii = 0; ii < length; ++ii) scratch[ii] = window.get(start + ii);
+    return new String(scratch, 0, length, charset);
+  }
+
+  /**
+   * Decodes the {@code index}-th token of the current record into a reusable
+   * buffer, without creating a {@link String}. The returned characters are
+   * only valid until the next call to this method.
+   */
+  CharSequence chars (int index) {
+    int start = tokenStarts[index], length = tokenEnds[index] - start;
+
+    // ASCII tokens are by far the most common, and are simply widened...
+    if (asciiCompatible) {
+      ensureChars(length);
+
+      int ii = 0;
+      for (byte b; ii < length && (b = window.get(start + ii)) >= 0; ++ii) chars.chars[ii] = (char) b;
+
+      if (ii == length) {
+        chars.length = length;
+        return chars;
+      }
+    }
+
+    // ...while anything else goes through a decoder, as new String() would
+    if (decoder == null) decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    if (length > scratch.length) {
+      scratch = new byte[Math.max(length, 2 * scratch.length)];
+      scratchBuffer = ByteBuffer.wrap(scratch);
+    }
+    for (int ii = 0; ii < length; ++ii) scratch[ii] = window.get(start + ii);
+    ensureChars((int) Math.ceil(length * (double) decoder.maxCharsPerByte()) + 1);
+
+    scratchBuffer.clear();
+    scratchBuffer.limit(length);
+    charBuffer.clear();
+    decoder.reset();
+    decoder.decode(scratchBuffer, charBuffer, true);
+    decoder.flush(charBuffer);
+
+    chars.length = charBuffer.position();
+    return chars;
+  }
+
+  // makes sure that 'chars' can hold at least 'length' chars
+  private void ensureChars (int length) {
+    if (length <= chars.chars.length) return;
+    chars.chars = new char[Math.max(length, 2 * chars.chars.length)];
+    charBuffer = CharBuffer.wrap(chars.chars);
+  }
+
+  /** Decodes all of the tokens of the current record. */
+  List<String> tokens() {
+    List<String> tokens = new ArrayList<>(nTokens);
+    for (int ii = 0; ii < nTokens; ++ii) tokens.add(token(ii));
+    return tokens;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (window != null) unmap(window);
+    window = null;
+    if (ownsChannel) channel.close();
+  }
+
+}
@@ -0,0 +1,57 @@
+package scheme;
+
+/**
+ * Strategies for choosing which rows of a CSV file
+ * {@link CSV#schema(String, Options) schema()} analyses in order to infer the
+ * type of data held within each column.
+ *
+ * <p>Whichever strategy is used, the column headers are always found by
+ * analysing the first {@code max(7, nTestRows) + 10} rows of the file (see
+ * {@link Options#nTestRows()}).</p>
+ */
+public enum Sampling {
+
+  /**
+   * Analyse only the first {@code max(7, nTestRows) + 10} rows of the file.
+   *
+   * <p>This is the fastest strategy, because only the very beginning of the
+   * file is ever read, but it will miss any change in the type of data held
+   * within a column further down the file.</p>
+   */
+  HEAD,
+
+  /**
+   * Analyse every row of the file, one after another, on the calling thread.
+   *
+   * <p>Rows are read through a fixed-size window onto the file and only the
+   * distinct types seen so far in each column are kept, so memory use stays
+   * flat no matter how large the file is.</p>
+   */
+  STREAM,
+
+  /**
+   * Analyse {@link Options#sampleSize() sampleSize} rows picked from random
+   * positions across the whole file, as well as the first rows of the file.
+   *
+   * <p>Only the parts of the file around each random position are read, so
+   * this strategy is nearly as fast as {@link #HEAD} on large files, while
+   * still noticing most changes in the type of data held within a column
+   * further down the file. Each random position is re-synchronised to the
+   * start of the next row, and rows with an unexpected number of columns
+   * (which might have been split in the wrong places) are passed over. Files
+   * no bigger than 1MB are analysed in full.</p>
+   */
+  RANDOM,
+
+  /**
+   * Analyse every row of the file, in parallel.
+   *
+   * <p>The file is split into byte ranges which are analysed concurrently on
+   * the common {@link java.util.concurrent.ForkJoinPool ForkJoinPool}, and the
+   * per-column results are then merged. Each range is re-synchronised to the
+   * first record which begins within it, taking quoted tokens which span
+   * multiple lines into account, so every record is analysed exactly once.</p>
+   */
+  PARALLEL
+
+}
@@ -0,0 +1,248 @@
+package scheme;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk cache of the schemata of CSV files, so that the schema of a file
+ * which hasn't changed since it was last analysed is never inferred again.
+ *
+ * <pre>{@code
+ * jshell> SchemaCache cache = new SchemaCache(Paths.get(".scheme-cache"))
+ * jshell> cache.infer("example.csv", Options.defaults())  // inferred, and cached
+ * jshell> cache.infer("example.csv", Options.defaults())  // read from the cache
+ * }</pre>
+ *
+ * <p>Each file's schema, header extents, date-time formats, and diagnostics
+ * are kept in a small binary file of their own in the cache directory. The
+ * entry is only used if the file still has the same path, size, and
+ * modification time, if it's read with the same {@link Options} (and the same
+ * date-time formats), and if a CRC-32 checksum of the first few records -- the
+ * ones which are searched for the header -- still matches. So a hit reads only
+ * those records, and never tokenises or types them; with
+ * {@link Sampling#HEAD}, they're everything that was analysed in the first
+ * place.</p>
+ *
+ * <p>On a miss, the schema is inferred as usual and returned straight away,
+ * and the entry is written in the background, by a single daemon thread;
+ * {@link #close()} waits for any entries which haven't been written yet.
+ * Column statistics aren't cached, so inferences which ask for them always
+ * read the file. A cache can be shared by any number of threads.</p>
+ */
+public final class SchemaCache implements AutoCloseable {
+
+  // "SCH" and the version of the format of the entries
+  private static final int MAGIC = 0x53434801;
+
+  private final Path directory;
+
+  // writes new entries, one after another
+  private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "scheme-cache");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Creates a cache which keeps its entries in the given {@code directory},
+   * creating it if it doesn't exist.
+   *
+   * @param directory the directory in which to keep the cache's entries
+   * @throws IOException if the directory couldn't be created
+   */
+  public SchemaCache (Path directory) throws IOException {
+    this.directory = Files.createDirectories(directory);
+  }
+
+  /**
+   * Returns the schema of the given {@code file}, exactly as
+   * {@link CSV#infer(String, Options) infer()} would, but from the cache, if
+   * the file hasn't changed since it was cached.
+   *
+   * @param file the path of the CSV file whose schema should be inferred
+   * @param options the options which control how the schema is inferred
+   * @return the schema, and everything else found out about the file
+   * @throws FileNotFoundException if {@code file} refers to a file which does
+   * not exist
+   * @throws java.io.UnsupportedEncodingException if the file is encoded in
+   * UTF-16 or UTF-32
+   * @throws IOException if there was a problem reading the {@code file}
+   */
+  public SchemaResult infer (String file, Options options)
+    throws FileNotFoundException, IOException {
+
+    if (options.columnStats()) return CSV.infer(file, options);
+
+    Path path;
+    BasicFileAttributes before;
+    try {
+      path = Paths.get(file).toAbsolutePath().normalize();
+      before = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException | RuntimeException ex) {
+      return CSV.infer(file, options); // ...which reports the problem properly
+    }
+
+    Path entry = entry(path);
+    long key = options.fingerprint();
+
+    SchemaResult cached = read(entry, file, path, before, key);
+    if (cached != null) return cached;
+
+    SchemaResult result = CSV.infer(file, options);
+    writer.execute(() -> write(entry, path, before, key, result));
+    return result;
+  }
+
+  /**
+   * Waits for any entries which haven't been written yet, and then stops the
+   * background thread which writes them. The cache can't be used afterwards.
+   */
+  @Override
+  public void close() {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // the cache entry for the file at 'path' (whose path is kept in the entry,
+  // too, in case of collisions)
+  private Path entry (Path path) {
+    return directory.resolve(String.format("%016x.schema", HyperLogLog.hash(path.toString())));
+  }
+
+  // the last modification time of a file, as precisely as the file system knows it
+  private static long modified (BasicFileAttributes attributes) {
+    return attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+  }
+
+  // a checksum of the first 'length' bytes of the file at 'path'
+  private static long checksum (Path path, long length) throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      return RecordReader.checksum(channel, length);
+    }
+  }
+
+  // returns the cached result for the file at 'path', or null if there isn't
+  // one, or if the file has changed since it was cached
+  private static SchemaResult read (Path entry, String file, Path path,
+    BasicFileAttributes attributes, long key) {
+
+    if (!Files.isRegularFile(entry)) return null;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+      if (in.readInt() != MAGIC) return null;
+      if (!in.readUTF().equals(path.toString())) return null;
+      if (in.readLong() != attributes.size() || in.readLong() != modified(attributes)) return null;
+      if (in.readLong() != key) return null;
+
+      long headBytes = in.readLong();
+      if (in.readLong() != checksum(path, headBytes)) return null;
+
+      int firstHeaderRow = in.readInt(), lastHeaderRow = in.readInt();
+
+      // the schema (a negative number of columns if there wasn't one), and the
+      // date-time format of each column
+      int nColumns = in.readInt();
+      List<Entry<String, Class<?>>> schema = nColumns < 0 ? null : new ArrayList<>(nColumns);
+      List<String> dateFormats = new ArrayList<>(Math.max(0, nColumns));
+
+      for (int cc = 0; cc < nColumns; ++cc) {
+        String name = in.readUTF();
+        schema.add(new SimpleImmutableEntry<>(name, TypeCode.toClass(in.readByte())));
+        dateFormats.add(in.readBoolean() ? in.readUTF() : null);
+      }
+
+      int nDiagnostics = in.readInt();
+      List<String> diagnostics = new ArrayList<>(nDiagnostics);
+      for (int ii = 0; ii < nDiagnostics; ++ii) diagnostics.add(in.readUTF());
+
+      return new SchemaResult(file, schema, firstHeaderRow, lastHeaderRow,
+        dateFormats, Collections.emptyList(), diagnostics, headBytes);
+
+    } catch (IOException | RuntimeException ex) {
+      return null; // a damaged or incomplete entry is just a miss
+    }
+  }
+
+  // caches the result for the file at 'path', unless the file has changed
+  // since it was inferred
+  private static void write (Path entry, Path path, BasicFileAttributes before,
+    long key, SchemaResult result) {
+
+    try {
+      long checksum = checksum(path, result.headBytes());
+
+      BasicFileAttributes after = Files.readAttributes(path, BasicFileAttributes.class);
+      if (after.size() != before.size() || modified(after) != modified(before)) return;
+
+      // write to a temporary file, then move it into place, so that readers
+      // never see a partly-written entry
+      Path temp = Files.createTempFile(entry.getParent(), "entry", ".tmp");
+      try {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+          out.writeInt(MAGIC);
+          out.writeUTF(path.toString());
+          out.writeLong(before.size());
+          out.writeLong(modified(before));
+          out.writeLong(key);
+          out.writeLong(result.headBytes());
+          out.writeLong(checksum);
+
+          int[] headerExtents = result.headerExtents();
+          out.writeInt(headerExtents[0]);
+          out.writeInt(headerExtents[1]);
+
+          List<Entry<String, Class<?>>> schema = result.schema();
+          out.writeInt(schema == null ? -1 : schema.size());
+
+          for (int cc = 0; schema != null && cc < schema.size(); ++cc) {
+            out.writeUTF(schema.get(cc).getKey());
+            out.writeByte(TypeCode.of(schema.get(cc).getValue()));
+
+            String format = cc < result.dateFormats().size() ? result.dateFormats().get(cc) : null;
+            out.writeBoolean(format != null);
+            if (format != null) out.writeUTF(format);
+          }
+
+          out.writeInt(result.diagnostics().size());
+          for (String message : result.diagnostics()) out.writeUTF(message);
+        }
+
+        try {
+          Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+          Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+
+    } catch (IOException | RuntimeException ex) {
+      System.err.println("SchemaCache : could not cache the schema of '" + path + "' : " + ex);
+    }
+  }
+
+}
@@ -0,0 +1,240 @@
+package scheme;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Immutable record of how far the schema of a growing CSV file has been
+ * inferred, so that the next inference only has to read the records which
+ * have been appended since; see
+ * {@link CSV#resume(String, Options, SchemaCheckpoint) resume()}.
+ *
+ * <p>A checkpoint holds the byte offset of the end of the last record which
+ * was analysed, the column names and header rows which were found the first
+ * time, and the distinct types (and date-time formats) seen so far in each
+ * column, which is all that's needed to widen the types as more records are
+ * read. It can be kept in memory, or saved with {@link #write(OutputStream)}
+ * and loaded again with {@link #read(InputStream)}.</p>
+ */
+public final class SchemaCheckpoint {
+
+  // "SCP" and the version of the format
+  private static final int MAGIC = 0x53435001;
+
+  // the file's head (the records searched for the header): its length and checksum
+  private final long headBytes;
+  private final long headChecksum;
+
+  // Options.fingerprint() of the options (and date-time formats) in use
+  private final long fingerprint;
+
+  // were there enough records for the header rows to be found for certain?
+  private final boolean complete;
+
+  private final String charset;
+  private final long offset;
+  private final int firstHeaderRow;
+  private final int lastHeaderRow;
+  private final List<String> names;
+  private final List<String> diagnostics;
+  private final ColumnTypes types;  // never changed once the checkpoint is made
+  private final SchemaResult result;
+
+  private SchemaCheckpoint (String file, long headBytes, long headChecksum,
+    long fingerprint, boolean complete, String charset, long offset, int firstHeaderRow,
+    int lastHeaderRow, List<String> names, List<String> diagnostics,
+    ColumnTypes types, List<String> dateFormats) {
+
+    this.headBytes      = headBytes;
+    this.headChecksum   = headChecksum;
+    this.fingerprint    = fingerprint;
+    this.complete       = complete;
+    this.charset        = charset;
+    this.offset         = offset;
+    this.firstHeaderRow = firstHeaderRow;
+    this.lastHeaderRow  = lastHeaderRow;
+    this.names          = Collections.unmodifiableList(new ArrayList<>(names));
+    this.diagnostics    = Collections.unmodifiableList(new ArrayList<>(diagnostics));
+    this.types          = types;
+
+    // zip the names and types (data rows may have more columns than the header
+    // rows -- give those generic names, just as CSV.infer() does)
+    List<Class<?>> classes = types.narrowest();
+    List<Entry<String, Class<?>>> schema = null;
+
+    if (types.size() > 0 || !names.isEmpty()) {
+      schema = new ArrayList<>(classes.size());
+      for (int ii = 0; ii < classes.size(); ++ii)
+        schema.add(new SimpleImmutableEntry<>(ii < names.size() ? names.get(ii) : ("X" + (ii+1)),
+          classes.get(ii)));
+    }
+
+    result = new SchemaResult(file, schema, firstHeaderRow, lastHeaderRow,
+      dateFormats, Collections.emptyList(), diagnostics, headBytes);
+  }
+
+  /**
+   * Creates the first checkpoint of a file, from the result of inferring its
+   * header (and its column {@code names}, and whether the header is
+   * {@code complete}), and the types of its records from the end of the
+   * header up to {@code offset}.
+   */
+  static SchemaCheckpoint first (String file, SchemaResult header,
+    List<String> names, boolean complete, long headChecksum, Options options,
+    Charset charset, long offset, ColumnTypes types, FormatIndex formats) {
+
+    return new SchemaCheckpoint(file, header.headBytes(), headChecksum,
+      options.fingerprint(), complete, charset.name(), offset, header.headerExtents()[0],
+      header.headerExtents()[1], names, header.diagnostics(), types,
+      types.datePatterns(formats));
+  }
+
+  /**
+   * Returns a checkpoint which has also seen the records up to
+   * {@code offset}, whose types (seen with {@code formats}) have been added to
+   * {@code types} -- a copy of this checkpoint's {@link #types()}.
+   */
+  SchemaCheckpoint next (String file, long offset, ColumnTypes types, FormatIndex formats) {
+    return new SchemaCheckpoint(file, headBytes, headChecksum, fingerprint,
+      complete, charset, offset, firstHeaderRow, lastHeaderRow, names, diagnostics,
+      types, types.datePatterns(formats));
+  }
+
+  /**
+   * Returns {@code true} if this checkpoint's header is complete, and the
+   * file read by {@code channel} still starts with the same head (so it's
+   * only been appended to, not rewritten), is no shorter than this
+   * checkpoint's offset, and is being read with options which have the given
+   * {@link Options#fingerprint fingerprint}.
+   */
+  boolean continues (FileChannel channel, long fingerprint) throws IOException {
+    return complete && this.fingerprint == fingerprint &&
+      channel.size() >= offset && RecordReader.checksum(channel, headBytes) == headChecksum;
+  }
+
+  /** Returns a copy of the types seen so far, which can be added to. */
+  ColumnTypes types() {
+    return new ColumnTypes().merge(types);
+  }
+
+  /** Returns the encoding of the file. */
+  Charset charset() {
+    return Charset.forName(charset);
+  }
+
+  /**
+   * Returns the schema of the file, as of this checkpoint, along with
+   * everything else found out about it -- except for its
+   * {@link SchemaResult#columnStats() column statistics}, which aren't
+   * collected incrementally.
+   *
+   * @return the schema of the file, as of this checkpoint
+   */
+  public SchemaResult result() { return result; }
+
+  /**
+   * Returns the file offset of the end of the last record which has been
+   * analysed, where the next inference will begin.
+   *
+   * @return the number of bytes of the file which have been analysed
+   */
+  public long offset() { return offset; }
+
+  /**
+   * Writes this checkpoint to {@code out}, in a compact binary form which
+   * can be read back with {@link #read(InputStream)}. The stream is not
+   * closed.
+   *
+   * @param out the stream to write to
+   * @throws IOException if there was a problem writing to {@code out}
+   */
+  public void write (OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+
+    data.writeInt(MAGIC);
+    data.writeUTF(result.file());
+    data.writeLong(headBytes);
+    data.writeLong(headChecksum);
+    data.writeLong(fingerprint);
+    data.writeBoolean(complete);
+    data.writeUTF(charset);
+    data.writeLong(offset);
+    data.writeInt(firstHeaderRow);
+    data.writeInt(lastHeaderRow);
+
+    writeStrings(data, names);
+    writeStrings(data, diagnostics);
+    writeStrings(data, result.dateFormats());
+    types.write(data);
+
+    data.flush();
+  }
+
+  /**
+   * Reads a checkpoint written by {@link #write(OutputStream)}.
+   *
+   * @param in the stream to read from
+   * @return the checkpoint
+   * @throws IOException if there was a problem reading from {@code in}, or
+   * if it doesn't contain a checkpoint
+   */
+  public static SchemaCheckpoint read (InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+
+    if (data.readInt() != MAGIC) throw new IOException("read() : not a schema checkpoint");
+
+    String file       = data.readUTF();
+    long headBytes    = data.readLong();
+    long headChecksum = data.readLong();
+    long fingerprint  = data.readLong();
+    boolean complete  = data.readBoolean();
+    String charset    = data.readUTF();
+    long offset       = data.readLong();
+    int firstHeaderRow = data.readInt();
+    int lastHeaderRow  = data.readInt();
+
+    List<String> names       = readStrings(data);
+    List<String> diagnostics = readStrings(data);
+    List<String> dateFormats = readStrings(data);
+    ColumnTypes types = ColumnTypes.read(data);
+
+    return new SchemaCheckpoint(file, headBytes, headChecksum, fingerprint,
+      complete, charset, offset, firstHeaderRow, lastHeaderRow, names, diagnostics,
+      types, dateFormats);
+  }
+
+  // writes a list of (possibly null) Strings
+  private static void writeStrings (DataOutputStream out, List<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeBoolean(string != null);
+      if (string != null) out.writeUTF(string);
+    }
+  }
+
+  // reads a list written by writeStrings()
+  private static List<String> readStrings (DataInputStream in) throws IOException {
+    int n = in.readInt();
+    if (n < 0) throw new IOException("read() : invalid list length: " + n);
+
+    List<String> strings = new ArrayList<>(Math.min(n, 1 << 16));
+    for (int ii = 0; ii < n; ++ii) strings.add(in.readBoolean() ? in.readUTF() : null);
+    return strings;
+  }
+
+  @Override
+  public String toString() {
+    return "SchemaCheckpoint[offset=" + offset + ", result=" + result + "]";
+  }
+
+}
@@ -0,0 +1,115 @@
+package scheme;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Immutable result of inferring the schema of a single CSV file with
+ * {@link CSV#infer(String, Options) infer()}: the schema itself, along with
+ * everything else that was found out about the file along the way.
+ *
+ * <p>Unlike {@link CSV#headerExtents()}, {@link CSV#dateFormats()}, and
+ * {@link CSV#columnStats()}, which describe the most recently-analysed file,
+ * a {@code SchemaResult} belongs to a single call, so any number of files can
+ * be analysed at once, on any number of threads, and their results can be
+ * shared between threads without any locking.</p>
+ */
+public final class SchemaResult {
+
+  private final String file;
+  private final List<Entry<String, Class<?>>> schema;
+  private final int firstHeaderRow;
+  private final int lastHeaderRow;
+  private final List<String> dateFormats;
+  private final List<ColumnStats> columnStats;
+  private final List<String> diagnostics;
+  private final long headBytes;
+
+  SchemaResult (String file, List<Entry<String, Class<?>>> schema,
+    int firstHeaderRow, int lastHeaderRow, List<String> dateFormats,
+    List<ColumnStats> columnStats, List<String> diagnostics, long headBytes) {
+
+    this.file           = file;
+    this.schema         = schema == null ? null : Collections.unmodifiableList(new ArrayList<>(schema));
+    this.firstHeaderRow = firstHeaderRow;
+    this.lastHeaderRow  = lastHeaderRow;
+    this.dateFormats    = Collections.unmodifiableList(new ArrayList<>(dateFormats));
+    this.columnStats    = Collections.unmodifiableList(new ArrayList<>(columnStats));
+    this.diagnostics    = Collections.unmodifiableList(new ArrayList<>(diagnostics));
+    this.headBytes      = headBytes;
+  }
+
+  /**
+   * Returns the path of the file which was analysed.
+   *
+   * @return the path of the file which was analysed
+   */
+  public String file() { return file; }
+
+  /**
+   * Returns the schema of the file, as returned by
+   * {@link CSV#schema(String, Options) schema()}, or {@code null} if no
+   * schema could be inferred (see {@link #diagnostics()}).
+   *
+   * @return an unmodifiable {@code List<Entry<String, Class<?>>>} of
+   * (immutable) column names and classes, or {@code null}
+   */
+  public List<Entry<String, Class<?>>> schema() { return schema; }
+
+  /**
+   * Returns the extents (line / row indices) which define the header region
+   * of the file, just like {@link CSV#headerExtents()}.
+   *
+   * @return a new two-element {@code int} array giving the first and last
+   * row index (0-based, both inclusive) of the header region, or
+   * {@code int[]{-1, -1}} if no header region was found
+   */
+  public int[] headerExtents() { return new int[]{ firstHeaderRow, lastHeaderRow }; }
+
+  /**
+   * Returns the date-time format of each column, just like
+   * {@link CSV#dateFormats()}.
+   *
+   * @return an unmodifiable list of the date-time format of each column
+   */
+  public List<String> dateFormats() { return dateFormats; }
+
+  /**
+   * Returns the statistics of each column, just like
+   * {@link CSV#columnStats()}.
+   *
+   * @return an unmodifiable list of the statistics of each column, or an
+   * empty list if they weren't asked for
+   */
+  public List<ColumnStats> columnStats() { return columnStats; }
+
+  /**
+   * Returns any problems which were found while the schema was inferred --
+   * for example, that no column names could be found, so generic ones were
+   * used, or that the file contains no data -- which
+   * {@link CSV#schema(String, Options) schema()} would print to the standard
+   * error stream.
+   *
+   * @return an unmodifiable list of diagnostic messages (empty if there were
+   * no problems)
+   */
+  public List<String> diagnostics() { return diagnostics; }
+
+  /**
+   * Returns the number of bytes at the start of the file which were read to
+   * find its header rows (the first few records, including any byte order
+   * mark).
+   */
+  long headBytes() { return headBytes; }
+
+  @Override
+  public String toString() {
+    return "SchemaResult[file=" + file + ", schema=" + schema +
+      ", headerExtents=[" + firstHeaderRow + ", " + lastHeaderRow + "]" +
+      ", dateFormats=" + dateFormats + ", columnStats=" + columnStats +
+      ", diagnostics=" + diagnostics + "]";
+  }
+
+}
@@ -0,0 +1,273 @@
+package scheme;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Small HTTP server which infers the schemata of CSV files, so that other
+ * processes can use a single, long-running (and so already warmed-up) JVM,
+ * instead of starting a new one for every file.
+ *
+ * <p>The server answers requests to {@code /schema} with a JSON object
+ * holding the file's schema, header extents, date-time formats, column
+ * statistics (if the server's {@link Options} ask for them), and diagnostic
+ * messages:</p>
+ *
+ * <pre>{@code
+ * $ curl 'http://localhost:8080/schema?path=/data/example.csv'
+ * $ curl --data-binary @example.csv 'http://localhost:8080/schema?sampling=stream'
+ * }</pre>
+ *
+ * <p>A {@code GET} request analyses the file at the given {@code path}, on
+ * the server's file system; a {@code POST} request analyses the CSV data in
+ * its body, which is streamed to a temporary file first. The optional
+ * {@code sampling} parameter picks the {@link Sampling} strategy. Errors are
+ * returned as {@code {"error": "..."}}, with a status of 400 for bad
+ * requests, 404 for missing files, 415 for unsupported encodings, and 500
+ * for other I/O errors.</p>
+ *
+ * <p>Each request is handled on a virtual thread of its own on Java 21 and
+ * later, or on a pool of threads on earlier versions. Because any file the
+ * server can read can be asked for, the server should only be bound to a
+ * local address.</p>
+ */
+public final class SchemaServer implements Closeable {
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Options options;
+
+  /**
+   * Creates a server which will listen at the given {@code address} once
+   * it's {@link #start() started}, and infer schemata with the given
+   * {@code options}.
+   *
+   * @param address the address to listen at (port 0 picks any free port)
+   * @param options the options which control how schemata are inferred
+   * @throws IOException if the server can't listen at {@code address}
+   */
+  public SchemaServer (InetSocketAddress address, Options options) throws IOException {
+    this.options = options;
+
+    // compile the date-time formats now, rather than in the first request
+    options.dateFormats().snapshot().prepare();
+
+    server = HttpServer.create(address, 0);
+    server.createContext("/schema", this::handle);
+    executor = newExecutor();
+    server.setExecutor(executor);
+  }
+
+  // one virtual thread per request, where there are virtual threads (Java
+  // 21+), or else a pool of ordinary threads
+  private static ExecutorService newExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      return Executors.newFixedThreadPool(4 * Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "scheme-server");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /** Starts listening for requests, in the background. */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Returns the address the server is listening at -- which has the actual
+   * port number, if the server was created with port 0.
+   *
+   * @return the address the server is listening at
+   */
+  public InetSocketAddress address() {
+    return server.getAddress();
+  }
+
+  /** Stops listening, and stops the threads which handle requests. */
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdown();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // answers a single request to /schema
+  private void handle (HttpExchange exchange) throws IOException {
+    try {
+      Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+      String method = exchange.getRequestMethod();
+
+      Options requestOptions = options;
+      if (query.containsKey("sampling")) {
+        try {
+          requestOptions = options.withSampling(
+            Sampling.valueOf(query.get("sampling").toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException ex) {
+          respond(exchange, 400, error("unknown sampling strategy: " + query.get("sampling")));
+          return;
+        }
+      }
+
+      if (method.equals("GET")) {
+        String path = query.get("path");
+        if (path == null) { respond(exchange, 400, error("missing parameter: path")); return; }
+        respond(exchange, 200, json(CSV.infer(path, requestOptions), path));
+
+      } else if (method.equals("POST")) {
+        Path temp = Files.createTempFile("scheme", ".csv");
+        try {
+          Files.copy(exchange.getRequestBody(), temp, StandardCopyOption.REPLACE_EXISTING);
+          respond(exchange, 200, json(CSV.infer(temp.toString(), requestOptions), null));
+        } finally {
+          Files.deleteIfExists(temp);
+        }
+
+      } else {
+        exchange.getResponseHeaders().set("Allow", "GET, POST");
+        respond(exchange, 405, error("method not allowed: " + method));
+      }
+
+    } catch (FileNotFoundException ex) {
+      respond(exchange, 404, error("file not found: " + ex.getMessage()));
+
+    } catch (UnsupportedEncodingException ex) {
+      respond(exchange, 415, error("unsupported encoding: " + ex.getMessage()));
+
+    } catch (IOException | RuntimeException ex) {
+      respond(exchange, 500, error(ex.toString()));
+
+    } finally {
+      exchange.close();
+    }
+  }
+
+  // decodes the parameters of a query string
+  private static Map<String, String> query (String rawQuery) throws UnsupportedEncodingException {
+    Map<String, String> parameters = new HashMap<>();
+    if (rawQuery == null) return parameters;
+
+    for (String pair : rawQuery.split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals < 0) parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+      else parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+    }
+    return parameters;
+  }
+
+  private static void respond (HttpExchange exchange, int status, String json) throws IOException {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream body = exchange.getResponseBody()) {
+      body.write(bytes);
+    }
+  }
+
+  private static String error (String message) {
+    return "{\"error\":" + string(message) + "}";
+  }
+
+  // the result as a JSON object, whose "file" is the given one (or null, for
+  // the body of a request)
+  private static String json (SchemaResult result, String file) {
+    StringBuilder json = new StringBuilder("{\"file\":").append(string(file));
+
+    json.append(",\"schema\":");
+    List<Entry<String, Class<?>>> schema = result.schema();
+    if (schema == null) json.append("null");
+    else {
+      json.append('[');
+      for (int cc = 0; cc < schema.size(); ++cc) {
+        if (cc > 0) json.append(',');
+        String format = cc < result.dateFormats().size() ? result.dateFormats().get(cc) : null;
+        json.append("{\"name\":").append(string(schema.get(cc).getKey()))
+          .append(",\"type\":").append(string(schema.get(cc).getValue().getName()))
+          .append(",\"dateFormat\":").append(string(format)).append('}');
+      }
+      json.append(']');
+    }
+
+    int[] headerExtents = result.headerExtents();
+    json.append(",\"headerExtents\":[").append(headerExtents[0]).append(',')
+      .append(headerExtents[1]).append(']');
+
+    json.append(",\"columnStats\":[");
+    for (int cc = 0; cc < result.columnStats().size(); ++cc) {
+      ColumnStats stats = result.columnStats().get(cc);
+      if (cc > 0) json.append(',');
+      json.append("{\"count\":").append(stats.count())
+        .append(",\"nullCount\":").append(stats.nullCount())
+        .append(",\"emptyCount\":").append(stats.emptyCount())
+        .append(",\"min\":").append(number(stats.min()))
+        .append(",\"max\":").append(number(stats.max()))
+        .append(",\"minLength\":").append(stats.minLength())
+        .append(",\"maxLength\":").append(stats.maxLength())
+        .append(",\"distinctCount\":").append(stats.distinctCount()).append('}');
+    }
+    json.append(']');
+
+    json.append(",\"diagnostics\":[");
+    for (int ii = 0; ii < result.diagnostics().size(); ++ii) {
+      if (ii > 0) json.append(',');
+      json.append(string(result.diagnostics().get(ii)));
+    }
+    return json.append("]}").toString();
+  }
+
+  // a JSON number, or null for NaN and infinities, which JSON doesn't have
+  private static String number (double value) {
+    return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+  }
+
+  // a quoted and escaped JSON string, or null
+  private static String string (String value) {
+    if (value == null) return "null";
+
+    StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+    for (int ii = 0; ii < value.length(); ++ii) {
+      char c = value.charAt(ii);
+      switch (c) {
+        case '"':  json.append("\\\""); break;
+        case '\\': json.append("\\\\"); break;
+        case '\n': json.append("\\n");  break;
+        case '\r': json.append("\\r");  break;
+        case '\t': json.append("\\t");  break;
+        default:
+          if (c < ' ') json.append(String.format("\\u%04x", (int) c));
+          else json.append(c);
+      }
+    }
+    return json.append('"').toString();
+  }
+
+}
@@ -0,0 +1,128 @@
+package scheme;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates the {@link ColumnStats} of each column of a CSV file, in
+ * constant memory per column, alongside its {@link ColumnTypes}.
+ *
+ * <p>Every token of every analysed record is counted, but numbers are only
+ * evaluated for the min / max while their column's type is still being
+ * inferred: once a column is {@link ColumnTypes#isSettled settled}, its type
+ * is {@link String}, so its min / max will never be reported anyway.
+ * Accumulators for different parts of the same file can be merged with
+ * {@link #merge(StatsAccumulator)}.</p>
+ */
+final class StatsAccumulator {
+
+  // number of records with at least one token
+  private long nRecords = 0;
+  private int nColumns = 0;
+
+  private long[] counts      = new long[16];
+  private long[] emptyCounts = new long[16];
+  private double[] mins      = newDoubles(16, Double.POSITIVE_INFINITY);
+  private double[] maxs      = newDoubles(16, Double.NEGATIVE_INFINITY);
+  private int[] minLengths   = newInts(16, Integer.MAX_VALUE);
+  private int[] maxLengths   = new int[16];
+  private HyperLogLog[] sketches = new HyperLogLog[16];
+
+  /** Records that another record, with {@code nTokens} tokens, was analysed. */
+  void addRecord (int nTokens) {
+    if (nTokens > 0) ++nRecords;
+  }
+
+  /**
+   * Records the given {@code token} in {@code column}, which has been
+   * inferred to be of the given {@link TypeCode}.
+   */
+  void add (int column, CharSequence token, byte type, boolean postfixFL) {
+    if (column >= nColumns) grow(column + 1);
+    ++counts[column];
+
+    int length = token.length();
+    if (length == 0) { ++emptyCounts[column]; return; }
+
+    if (length < minLengths[column]) minLengths[column] = length;
+    if (length > maxLengths[column]) maxLengths[column] = length;
+    sketches[column].add(token);
+
+    if (type >= TypeCode.BYTE && type <= TypeCode.DOUBLE) {
+      double value = StringManip.numericValue(token, 0, length, type, postfixFL);
+      if (value < mins[column]) mins[column] = value;
+      if (value > maxs[column]) maxs[column] = value;
+    }
+  }
+
+  // makes room for (at least) 'n' columns
+  private void grow (int n) {
+    if (n > counts.length) {
+      int length = Math.max(n, 2 * counts.length);
+      counts      = Arrays.copyOf(counts, length);
+      emptyCounts = Arrays.copyOf(emptyCounts, length);
+      mins        = Arrays.copyOf(mins, length);
+      maxs        = Arrays.copyOf(maxs, length);
+      minLengths  = Arrays.copyOf(minLengths, length);
+      maxLengths  = Arrays.copyOf(maxLengths, length);
+      sketches    = Arrays.copyOf(sketches, length);
+      Arrays.fill(mins,       nColumns, length, Double.POSITIVE_INFINITY);
+      Arrays.fill(maxs,       nColumns, length, Double.NEGATIVE_INFINITY);
+      Arrays.fill(minLengths, nColumns, length, Integer.MAX_VALUE);
+    }
+    for (int cc = nColumns; cc < n; ++cc) sketches[cc] = new HyperLogLog();
+    nColumns = n;
+  }
+
+  private static double[] newDoubles (int length, double value) {
+    double[] values = new double[length];
+    Arrays.fill(values, value);
+    return values;
+  }
+
+  private static int[] newInts (int length, int value) {
+    int[] values = new int[length];
+    Arrays.fill(values, value);
+    return values;
+  }
+
+  /** Adds all of the statistics collected by {@code other} to this accumulator, and returns it. */
+  StatsAccumulator merge (StatsAccumulator other) {
+    if (other.nColumns > nColumns) grow(other.nColumns);
+    nRecords += other.nRecords;
+
+    for (int cc = 0; cc < other.nColumns; ++cc) {
+      counts[cc]      += other.counts[cc];
+      emptyCounts[cc] += other.emptyCounts[cc];
+      mins[cc]       = Math.min(mins[cc], other.mins[cc]);
+      maxs[cc]       = Math.max(maxs[cc], other.maxs[cc]);
+      minLengths[cc] = Math.min(minLengths[cc], other.minLengths[cc]);
+      maxLengths[cc] = Math.max(maxLengths[cc], other.maxLengths[cc]);
+      sketches[cc].merge(other.sketches[cc]);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the statistics of each column, given the inferred {@code types}
+   * of the columns (whose min / max are only reported if they're numeric).
+   */
+  List<ColumnStats> stats (List<Class<?>> types) {
+    int n = Math.max(nColumns, types.size());
+    List<ColumnStats> stats = new ArrayList<>(n);
+
+    for (int cc = 0; cc < n; ++cc) {
+      if (cc >= nColumns) { stats.add(new ColumnStats(0, nRecords, 0, Double.NaN, Double.NaN, 0, 0, 0)); continue; }
+
+      byte type = cc < types.size() ? TypeCode.of(types.get(cc)) : TypeCode.OBJECT;
+      boolean numeric = type >= TypeCode.BYTE && type <= TypeCode.DOUBLE && mins[cc] <= maxs[cc];
+
+      stats.add(new ColumnStats(counts[cc], nRecords - counts[cc], emptyCounts[cc],
+        numeric ? mins[cc] : Double.NaN, numeric ? maxs[cc] : Double.NaN,
+        maxLengths[cc] == 0 ? 0 : minLengths[cc], maxLengths[cc], sketches[cc].estimate()));
+    }
+    return stats;
+  }
+
+}
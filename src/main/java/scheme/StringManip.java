@@ -1,11 +1,9 @@
 package scheme;
 
-import java.nio.CharBuffer;
+import java.text.ParsePosition;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.AbstractMap.SimpleEntry;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map.Entry;
 
 /**
@@ -271,203 +269,595 @@ public class StringManip {
    *
    **/
   public static Entry<Class<?>, String> typify (String data, boolean bool01, boolean commonTypes, boolean postfixFL, boolean parseDates) {
+    return typify(data, bool01, commonTypes, postfixFL, parseDates, null);
+  }
+
+  /**
+   * Works just like
+   * {@link #typify(String, boolean, boolean, boolean, boolean) typify()}, but
+   * if {@code dateFormat} isn't {@code null}, it's used to remember which
+   * date-time format matched; see {@link #stringAsDate(String, int[])}.
+   */
+  static Entry<Class<?>, String> typify (String data, boolean bool01, boolean commonTypes, boolean postfixFL, boolean parseDates, int[] dateFormat) {
+    int code = classify(data, 0, (data == null) ? 0 : data.length(),
+      bool01, commonTypes, postfixFL, parseDates, DateTimeFormats.index(), dateFormat);
+
+    byte type = (code == OUT_OF_RANGE) ? TypeCode.STRING : (byte) code;
+    return new SimpleEntry<>(TypeCode.toClass(type), value(data, code, postfixFL));
+  }
+
+  /**
+   * Infers the type of the {@code length} characters of {@code data} starting
+   * at {@code offset}, exactly as
+   * {@link #typify(String, boolean, boolean, boolean, boolean) typify()} would
+   * infer the type of those characters as a {@link String} -- but without
+   * creating any objects, because the characters are never copied, trimmed,
+   * or parsed into boxed numbers, and only their type is returned, as one of
+   * the codes in {@link TypeCode}.
+   *
+   * <p>(Objects are still created to parse date-times in formats which
+   * {@link DateTimeFormats} can't parse without a
+   * {@link java.time.format.DateTimeFormatter}, and to check whether numbers
+   * within a factor of ten of the largest {@code float} or {@code double} are
+   * too large for it.)</p>
+   *
+   * @param data characters to interpret
+   * @param offset index of the first character to interpret
+   * @param length number of characters to interpret
+   * @param bool01 see {@link #typify(String, boolean, boolean, boolean, boolean) typify()}
+   * @param commonTypes see {@link #typify(String, boolean, boolean, boolean, boolean) typify()}
+   * @param postfixFL see {@link #typify(String, boolean, boolean, boolean, boolean) typify()}
+   * @param parseDates see {@link #typify(String, boolean, boolean, boolean, boolean) typify()}
+   *
+   * @return the {@link TypeCode} of the inferred type
+   * @throws IndexOutOfBoundsException if {@code offset} and {@code length}
+   * don't describe a range within {@code data}
+   */
+  public static byte typeCode (CharSequence data, int offset, int length, boolean bool01, boolean commonTypes, boolean postfixFL, boolean parseDates) {
+    return typeCode(data, offset, length, bool01, commonTypes, postfixFL, parseDates,
+      DateTimeFormats.index(), null);
+  }
+
+  /**
+   * Works just like
+   * {@link #typeCode(CharSequence, int, int, boolean, boolean, boolean, boolean) typeCode()},
+   * but only the date-time formats in {@code formats} are recognised, and if
+   * {@code dateFormat} isn't {@code null}, it's used to remember which of
+   * them matched; see {@link #stringAsDate(String, int[])}.
+   */
+  static byte typeCode (CharSequence data, int offset, int length, boolean bool01, boolean commonTypes, boolean postfixFL, boolean parseDates, FormatIndex formats, int[] dateFormat) {
+    if (data != null && (offset < 0 || length < 0 || offset > data.length() - length))
+      throw new IndexOutOfBoundsException("typeCode() : offset " + offset +
+        " and length " + length + " are out of bounds for length " + data.length());
+
+    int code = classify(data, offset, offset + length, bool01, commonTypes, postfixFL, parseDates, formats, dateFormat);
+    return (code == OUT_OF_RANGE) ? TypeCode.STRING : (byte) code;
+  }
+
+  // classify() results, besides the TypeCodes: numbers which are too large
+  // for a double (which typify() returns as Strings, but trimmed), and tokens
+  // which aren't numbers at all
+  private static final int OUT_OF_RANGE = -1;
+  private static final int NOT_A_NUMBER = -2;
+
+  // the decimal exponents (see decimalExponent()) of the largest float and
+  // double, and sentinels for tokens which aren't floats, and for zero and NaN
+  private static final long FLOAT_EXPONENT  = 39;
+  private static final long DOUBLE_EXPONENT = 309;
+  private static final long NOT_A_FLOAT = Long.MIN_VALUE;
+  private static final long ZERO = Long.MIN_VALUE + 1;
+
+  // infers the type of data[start, end) -- see typify() for the details
+  private static int classify (CharSequence data, int start, int end, boolean bool01,
+    boolean commonTypes, boolean postfixFL, boolean parseDates, FormatIndex formats, int[] dateFormat) {
 
     // -2. if the input data has 0 length, return as null object
-    if (data == null || data.length() == 0) return new SimpleEntry<>(Object.class, null);
+    if (data == null || start == end) return TypeCode.OBJECT;
 
-    // -1. if the input data is only whitespace, return "String" and input as-is
-    String s = data.trim();  int slen = s.length();
-    if (slen == 0) return new SimpleEntry<>(String.class, data);
+    // -1. if the input data is only whitespace, return "String"
+    while (start < end && data.charAt(start) <= ' ') ++start;
+    while (end > start && data.charAt(end-1) <= ' ') --end;
+    if (start == end) return TypeCode.STRING;
 
     // otherwise, strip any surrounding quotes, then strip whitespace again
-    char firstChar = s.charAt(0);  char lastChar = s.charAt(slen-1);
+    char firstChar = data.charAt(start);
 
-    // slen > 1 because "'" should be returned as <Character, "'">
-    if (slen > 1 && firstChar == lastChar && (firstChar == '"' || firstChar == '\'')) {
-      s = s.substring(1, slen-1).trim(); // remove surrounding quotes
-      slen = s.length();
+    // end - start > 1 because "'" should be a Character
+    if (end - start > 1 && firstChar == data.charAt(end-1) && (firstChar == '"' || firstChar == '\'')) {
+      ++start; --end;
+      while (start < end && data.charAt(start) <= ' ') ++start;
+      while (end > start && data.charAt(end-1) <= ' ') --end;
     }
 
-    // now, if s is empty, return original data as String
-    if (s.length() == 0) return new SimpleEntry<>(String.class, data);
-    lastChar = s.charAt(slen-1); // we'll need this later
+    // now, if that's empty, it's a String
+    if (start == end) return TypeCode.STRING;
+    int slen = end - start;
 
     // In most data, numerical values are more common than boolean values. So,
     // if we want to speed up data parsing, we can move this block to the end
     // when looking only for common types. Look for "/// ***", below
 
-    final String[] falseAliases = new String[]{ "false", "False", "FALSE" };
-    final String[] trueAliases  = new String[]{ "true",  "True",  "TRUE" };
-
     /// 0. check if the data is Boolean (true or false)
-    if (!commonTypes) {
-      if     (CollectionManip.contains(falseAliases, s)) return new SimpleEntry<>(Boolean.class, "false");
-      else if (CollectionManip.contains(trueAliases, s)) return new SimpleEntry<>(Boolean.class, "true");
-    }
-
-    /**
-     * only Strings contain these characters -- skip all numeric processing
-     * arranged roughly by frequency in ~130MB of sample DASGIP files:
-     *  $ awk -vFS="" '{for(i=1;i<=NF;i++)w[$i]++}END{for(i in w) print i,w[i]}' file.txt
-     */
-
-    final char[] StringCharacters = new char[]{
-      ' ', ':', 'n', 'a', 't',   'r', 'o', 'C', 'i', 'P',   'D', 's', 'c', 'S', 'u',
-      'A', 'm', '=', 'O', '\\',  'd', 'p', 'T', 'M', 'g',   'I', 'b', 'U', 'h', 'H' };
-
-    /**
-     * typify() looks for the above characters in an input String before it
-     * makes any attempt at parsing that String. If it finds any of the above
-     * characters, it immediately skips to the String-processing section,
-     * because no numerical type can contain those characters.
-     *
-     * Adding more characters means that there are more characters to look for
-     * in the input String every time a piece of data is parsed, but it also
-     * reduces the likelihood that an Exception will be thrown when String data
-     * is attempted to be parsed as numerical data (which saves time).
-     *
-     * The characters below can also be added to the list, but the list above
-     * seems to be near-optimal.
-     */
-
-    //'J', '+', 'V', 'B', 'G',   'R', 'y', '(', ')', 'v',   '_', ',', '[', ']', '/',
-    //'N', 'k', 'w', '}', '{',   'X', '%', '>', 'x', '\'',  'W', '<', 'K', 'Q', 'q',
-    //'z', 'Y', 'j', 'Z', '!',   '#', '$', '&', '*', ',',   ';', '?', '@', '^', '`',
-    //'|', '~'};
+    if (!commonTypes && booleanValue(data, start, end) != null) return TypeCode.BOOLEAN;
 
     // check for any String-only characters; if we find them, don't bother trying to parse this as a number
-    if (CollectionManip.containsAny(s, CharBuffer.wrap(StringCharacters)) == false) {
+    if (!hasStringCharacters(data, start, end)) {
 
       // try again for boolean -- need to make sure it's not parsed as Byte
-      if (bool01) {
-        if      (s.equals("0")) return new SimpleEntry<>(Boolean.class, "false");
-        else if (s.equals("1")) return new SimpleEntry<>(Boolean.class, "true");
-      }
+      if (bool01 && slen == 1 && (data.charAt(start) == '0' || data.charAt(start) == '1'))
+        return TypeCode.BOOLEAN;
+
+      int code = classifyNumber(data, start, end, commonTypes, postfixFL);
+      if (code != NOT_A_NUMBER) return code;
+
+    } // if we have StringCharacters, we must have a String...
+
+    // ...or a Boolean!
+    if (commonTypes && booleanValue(data, start, end) != null) return TypeCode.BOOLEAN; /// ***
+
+    /// 7. revert to String by default, with caveats...
+
+    /// 7a. if string has length 1, it is a single character
+    if (!commonTypes && slen == 1) return TypeCode.CHARACTER; // end uncommon types 2/2
+
+    /// 7b. attempt to parse String as a LocalDateTime
+    if (parseDates && findDateFormat(data, start, end, formats, dateFormat) >= 0)
+      return TypeCode.LOCAL_DATE_TIME;
+
+    // ...if we've made it all the way to here without returning, give up and return "String"
+    return TypeCode.STRING;
+  }
+
+  // infers the numeric type of data[start, end), which has already been
+  // trimmed and unquoted, or returns NOT_A_NUMBER
+  //
+  // Numbers are checked as if their '_' and ',' thousands separators had been
+  // removed, and as if a non-negative exponent of an integer had been expanded
+  // into that many zeros -- so "2e3" is checked as "2000" -- but neither of
+  // those is ever done to an actual copy of the number: instead, the checks
+  // below read the "clean" number straight out of data[start, mantissaEnd),
+  // skipping separators, followed by nZeros zeros.
+  private static int classifyNumber (CharSequence data, int start, int end,
+    boolean commonTypes, boolean postfixFL) {
+
+    // float and long can have appended annotations
+    char lastChar = data.charAt(end-1);
+    boolean lastCharF = (lastChar == 'f' || lastChar == 'F');
+    boolean lastCharL = (lastChar == 'l' || lastChar == 'L');
+
+    // if the number has a decimal point, immediately move to float
+    boolean hasDecPnt = indexOf(data, start, end, '.') >= 0;
+
+    // if number doesn't contain a decimal point, but does contain 'e' or 'E'
+    // (but not both), try to parse the bit after the 'e' or 'E' as a short
+    // and add that many zeroes to the end of the number (negative exponents
+    // are left alone, so the number can still be parsed as a float)
+    int mantissaEnd = end, nZeros = 0;
+    int index = hasDecPnt ? -1 : exponentIndex(data, start, end);
+
+    if (index >= 0) {
+      int exponent = integerType(data, index+1, end, true, 0);
+
+      // problem parsing exponent, go to String immediately
+      if (exponent != TypeCode.BYTE && exponent != TypeCode.SHORT) return NOT_A_NUMBER;
+
+      int value = (int) longValue(data, index+1, end);
+      if (value >= 0) { mantissaEnd = index; nZeros = value; }
+    }
+
+    if (!commonTypes) { // if we're not restricted to common types, look for anything
+
+      if (!hasDecPnt) {
+
+        /// 1.-3. check if data is a Byte, Short, or Integer
+        int integer = integerType(data, start, mantissaEnd, true, nZeros);
+        if (integer >= 0 && integer != TypeCode.LONG) return integer;
+
+        /// 4. check if data is a Long (8-byte integer with range [-(2e63), (2e63)-1])
+
+        //    ...first, see if the last character of the string is "L" or "l"
+        //    ... Java parses "3.3F", etc. fine as a float, but not "3L", etc.
+        if (postfixFL && end - start > 1 && lastCharL)
+          integer = integerType(data, start, end-1, false, 0);
+
+        if (integer >= 0) return TypeCode.LONG;
+
+      } // end if(!hasDecPnt) block
+
+    } // end uncommon types 1/2
+
+    if (!postfixFL && lastCharF) return NOT_A_NUMBER;
+
+    long exponent = decimalExponent(data, start, mantissaEnd, nZeros);
+    if (exponent == NOT_A_FLOAT) return NOT_A_NUMBER;
+
+    /// 5. check if data is a Float (32-bit IEEE 754 floating point with approximate extents +/- 3.4028235e38)
+    if (!commonTypes && !overflows(data, start, mantissaEnd, nZeros, exponent, FLOAT_EXPONENT))
+      return TypeCode.FLOAT;
+
+    /// 6. check if data is a Double (64-bit IEEE 754 floating point with approximate extents +/- 1.797693134862315e308 )
+    if (!overflows(data, start, mantissaEnd, nZeros, exponent, DOUBLE_EXPONENT))
+      return TypeCode.DOUBLE;
+
+    // if it's beyond the range of Double, just return a String and let the user decide what to do
+    return OUT_OF_RANGE;
+  }
+
+  // powers of ten which can be represented exactly by a double
+  private static final double[] POWERS_OF_TEN = {
+    1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  /**
+   * Returns the value, as a {@code double}, of the number
+   * {@code data[offset, offset+length)}, which
+   * {@link #typeCode(CharSequence, int, int, boolean, boolean, boolean, boolean) typeCode()}
+   * has already found to be of the given numeric {@link TypeCode}, or
+   * {@code NaN} if {@code code} isn't a numeric type. (Integers beyond
+   * {@code 2^53} are rounded to the nearest {@code double}.)
+   *
+   * <p>Integers, and decimals with no more than 15 digits and no exponent,
+   * are worked out straight from {@code data}; other decimals are parsed by
+   * {@link Double#parseDouble(String)}.</p>
+   */
+  static double numericValue (CharSequence data, int offset, int length, byte code, boolean postfixFL) {
+    if (code < TypeCode.BYTE || code > TypeCode.DOUBLE) return Double.NaN;
+    int start = offset, end = offset + length;
+
+    // trim and unquote, just like classify()
+    while (start < end && data.charAt(start) <= ' ') ++start;
+    while (end > start && data.charAt(end-1) <= ' ') --end;
+    char firstChar = data.charAt(start);
+    if (end - start > 1 && firstChar == data.charAt(end-1) && (firstChar == '"' || firstChar == '\'')) {
+      ++start; --end;
+      while (start < end && data.charAt(start) <= ' ') ++start;
+      while (end > start && data.charAt(end-1) <= ' ') --end;
+    }
+
+    if (code <= TypeCode.LONG) {
+      char lastChar = data.charAt(end-1);
+      if (code == TypeCode.LONG && postfixFL && end - start > 1 && (lastChar == 'l' || lastChar == 'L'))
+        return longValue(data, start, end-1);
+
+      // a non-negative exponent (integers never have a negative one) is
+      // expanded into that many zeros -- the long arithmetic can wrap around
+      // along the way, but the end result fits, as integerType() checked
+      int index = exponentIndex(data, start, end);
+      if (index < 0) return longValue(data, start, end);
+
+      long value = longValue(data, start, index);
+      for (long nZeros = longValue(data, index+1, end); nZeros > 0; --nZeros) value *= 10;
+      return value;
+    }
+
+    // [+-]?[0-9]*[.]?[0-9]* with at most 15 digits can be divided exactly
+    long mantissa = 0;
+    int nDigits = 0, nFractionDigits = -1, ii = start;
+    boolean negative = data.charAt(ii) == '-';
+    if (negative || data.charAt(ii) == '+') ++ii;
+
+    for (; ii < end; ++ii) {
+      char c = data.charAt(ii);
+      if ('0' <= c && c <= '9') {
+        mantissa = 10 * mantissa + (c - '0');
+        if (++nDigits > 15) break;
+        if (nFractionDigits >= 0) ++nFractionDigits;
+      } else if (c == '.' && nFractionDigits < 0) nFractionDigits = 0;
+      else break;
+    }
+
+    if (ii == end && nDigits > 0) {
+      double value = mantissa / POWERS_OF_TEN[Math.max(0, nFractionDigits)];
+      return negative ? -value : value;
+    }
+
+    return Double.parseDouble(clean(data.subSequence(start, end).toString()));
+  }
+
+  // the (possibly modified) data which typify() returns with the given code
+  private static String value (String data, int code, boolean postfixFL) {
+    if (code == TypeCode.OBJECT) return null;
+    if (code == TypeCode.STRING) return data;
+
+    // everything else is trimmed and unquoted
+    String s = data.trim();  int slen = s.length();
+    char firstChar = s.charAt(0);
+    if (slen > 1 && firstChar == s.charAt(slen-1) && (firstChar == '"' || firstChar == '\'')) {
+      s = s.substring(1, slen-1).trim();
+      slen = s.length();
+    }
+
+    switch (code) {
+      case TypeCode.BOOLEAN:
+        String alias = booleanValue(s, 0, slen);
+        return (alias != null) ? alias : s.equals("1") ? "true" : "false";
+
+      case TypeCode.BYTE: case TypeCode.SHORT: case TypeCode.INTEGER:
+        return Long.toString(Long.parseLong(clean(s)));
+
+      case TypeCode.LONG:
+        char lastChar = s.charAt(slen-1);
+        return Long.toString(Long.parseLong((postfixFL && slen > 1 &&
+          (lastChar == 'l' || lastChar == 'L')) ? s.substring(0, slen-1) : clean(s)));
+
+      case TypeCode.FLOAT:  return Float.toString(Float.parseFloat(clean(s)));
+      case TypeCode.DOUBLE: return Double.toString(Double.parseDouble(clean(s)));
+
+      default: return s; // Character, LocalDateTime, or a number which is out of range
+    }
+  }
+
+  // the number s, with its separators removed and any exponent expanded, as
+  // in classifyNumber()
+  private static String clean (String s) {
+    int index = (s.indexOf('.') >= 0) ? -1 : exponentIndex(s, 0, s.length());
+    if (index < 0) return clean(s, 0, s.length(), 0);
+
+    int nZeros = (int) longValue(s, index+1, s.length());
+    return (nZeros < 0) ? clean(s, 0, s.length(), 0) : clean(s, 0, index, nZeros);
+  }
+
+  // data[start, end) without separators, followed by nZeros zeros
+  private static String clean (CharSequence data, int start, int end, int nZeros) {
+    StringBuilder sb = new StringBuilder(end - start + nZeros);
+    for (int ii = start; ii < end; ++ii) {
+      char c = data.charAt(ii);
+      if (c != '_' && c != ',') sb.append(c);
+    }
+    for (int ii = 0; ii < nZeros; ++ii) sb.append('0');
+    return sb.toString();
+  }
+
+  private static final String[] FALSE_ALIASES = { "false", "False", "FALSE" };
+  private static final String[] TRUE_ALIASES  = { "true",  "True",  "TRUE" };
+
+  // "false" or "true" if data[start, end) is an alias of either, otherwise null
+  private static String booleanValue (CharSequence data, int start, int end) {
+    for (String alias : FALSE_ALIASES) if (regionMatches(data, start, end, alias)) return "false";
+    for (String alias : TRUE_ALIASES)  if (regionMatches(data, start, end, alias)) return "true";
+    return null;
+  }
+
+  // returns true if data[start, end) is the same as 'text'
+  private static boolean regionMatches (CharSequence data, int start, int end, String text) {
+    if (end - start != text.length()) return false;
+    for (int ii = start; ii < end; ++ii)
+      if (data.charAt(ii) != text.charAt(ii - start)) return false;
+    return true;
+  }
 
-      // float and long can have appended annotations
-      boolean lastCharF = (lastChar == 'f' || lastChar == 'F');
-      boolean lastCharL = (lastChar == 'l' || lastChar == 'L');
+  // the index of the first 'c' in data[start, end), or -1
+  private static int indexOf (CharSequence data, int start, int end, char c) {
+    for (int ii = start; ii < end; ++ii) if (data.charAt(ii) == c) return ii;
+    return -1;
+  }
+
+  // the index of the exponent's 'e' or 'E' in data[start, end), if it
+  // contains one of those (but not both), otherwise -1
+  private static int exponentIndex (CharSequence data, int start, int end) {
+    int e = indexOf(data, start, end, 'e'), E = indexOf(data, start, end, 'E');
+    return (e >= 0 ^ E >= 0) ? Math.max(e, E) : -1;
+  }
+
+  /**
+   * only Strings contain these characters -- skip all numeric processing
+   * arranged roughly by frequency in ~130MB of sample DASGIP files:
+   *  $ awk -vFS="" '{for(i=1;i<=NF;i++)w[$i]++}END{for(i in w) print i,w[i]}' file.txt
+   */
 
-      // if the number has a decimal point, immediately move to float
-      boolean hasDecPnt = (s.indexOf('.') >= 0);
+  private static final char[] StringCharacters = new char[]{
+    ' ', ':', 'n', 'a', 't',   'r', 'o', 'C', 'i', 'P',   'D', 's', 'c', 'S', 'u',
+    'A', 'm', '=', 'O', '\\',  'd', 'p', 'T', 'M', 'g',   'I', 'b', 'U', 'h', 'H' };
 
-      // remove commas and _ from number, if there are any
-      String sClean = s.replaceAll("[_,]", "");
-      boolean gotoString = false;
+  /**
+   * typify() looks for the above characters in an input String before it
+   * makes any attempt at parsing that String. If it finds any of the above
+   * characters, it immediately skips to the String-processing section,
+   * because no numerical type can contain those characters.
+   *
+   * Adding more characters means that there are more characters to look for
+   * in the input String every time a piece of data is parsed, but it also
+   * reduces the likelihood that String data will be scanned as numerical
+   * data (which saves time).
+   *
+   * The characters below can also be added to the list, but the list above
+   * seems to be near-optimal.
+   */
 
-      // if number doesn't contain a decimal point, but does contain 'e' or 'E'
-      // (but not both), try to parse the bit after the 'e' or 'E' as a short
-      // and add that many zeroes to the end of the number
-      if (!hasDecPnt && (sClean.indexOf('e') >= 0 ^ sClean.indexOf('E') >= 0)) {
-        try {
-          int index = Math.max(sClean.indexOf('e'), sClean.indexOf('E'));
-          sClean = sClean.substring(0, index) + String.join("",
-            Collections.nCopies(Short.parseShort(sClean.substring(index+1)), "0"));
+  //'J', '+', 'V', 'B', 'G',   'R', 'y', '(', ')', 'v',   '_', ',', '[', ']', '/',
+  //'N', 'k', 'w', '}', '{',   'X', '%', '>', 'x', '\'',  'W', '<', 'K', 'Q', 'q',
+  //'z', 'Y', 'j', 'Z', '!',   '#', '$', '&', '*', ',',   ';', '?', '@', '^', '`',
+  //'|', '~'};
 
-        } catch (NumberFormatException ex) {
-          gotoString = true;
+  // ...as a lookup table, so each character is checked in constant time
+  private static final boolean[] IS_STRING_CHARACTER = new boolean[128];
+  static { for (char c : StringCharacters) IS_STRING_CHARACTER[c] = true; }
+
+  // returns true if data[start, end) contains any of the StringCharacters
+  private static boolean hasStringCharacters (CharSequence data, int start, int end) {
+    for (int ii = start; ii < end; ++ii) {
+      char c = data.charAt(ii);
+      if (c < 128 && IS_STRING_CHARACTER[c]) return true;
+    }
+    return false;
+  }
+
+  // returns the TypeCode (BYTE, SHORT, INTEGER or LONG) of the narrowest type
+  // which can hold Long.parseLong(s), or -1 if that would fail, where s is
+  // data[start, end) (without '_' and ',' separators, if skipSeparators is
+  // set) followed by nZeros zeros. This follows the JDK's own implementation
+  // exactly, so typify() never has to catch an exception.
+  private static int integerType (CharSequence data, int start, int end,
+    boolean skipSeparators, int nZeros) {
+
+    long limit = -Long.MAX_VALUE; // accumulate negatively, like the JDK
+    long multmin = limit / 10;
+    long result = 0;
+    boolean first = true, signed = false;
+
+    for (int ii = start; ii < end + nZeros; ++ii) {
+      char c = (ii < end) ? data.charAt(ii) : '0';
+      if (skipSeparators && ii < end && (c == '_' || c == ',')) continue;
+
+      if (first) {
+        first = false;
+        if (c < '0') { // possible leading "+" or "-"
+          if (c == '-') { limit = Long.MIN_VALUE; multmin = limit / 10; }
+          else if (c != '+') return -1;
+          signed = true;
+          continue;
         }
       }
 
-      // problem parsing exponent, go to String immediately
-      if (!gotoString) {
-
-        if (!commonTypes) { // if we're not restricted to common types, look for anything
-
-          if (!hasDecPnt) {
-
-            /// 1. check if data is a Byte (1-byte integer with range [-(2e7) = -128, ((2e7)-1) = 127])
-            try {
-              Byte b = Byte.parseByte(sClean);
-              return new SimpleEntry<>(Byte.class, b.toString()); // if we make it to this line, the data parsed fine as a Byte
-            } catch (NumberFormatException ex) {
-              // okay, guess it's not a Byte
-            }
-
-            /// 2. check if data is a Short (2-byte integer with range [-(2e15) = -32768, ((2e15)-1) = 32767])
-            try {
-              Short h = Short.parseShort(sClean);
-              return new SimpleEntry<>(Short.class, h.toString()); // if we make it to this line, the data parsed fine as a Short
-            } catch (NumberFormatException ex) {
-              // okay, guess it's not a Short
-            }
-
-            /// 3. check if data is an Integer (4-byte integer with range [-(2e31), (2e31)-1])
-            try {
-              Integer i = Integer.parseInt(sClean);
-              return new SimpleEntry<>(Integer.class, i.toString()); // if we make it to this line, the data parsed fine as an Integer
-            } catch (NumberFormatException ex) {
-              // okay, guess it's not an Integer
-            }
-
-            String s_L_trimmed = sClean;
-
-            /// 4. check if data is a Long (8-byte integer with range [-(2e63), (2e63)-1])
-
-            //    ...first, see if the last character of the string is "L" or "l"
-            //    ... Java parses "3.3F", etc. fine as a float, but throws an error with "3L", etc.
-            if (postfixFL && slen > 1 && lastCharL)
-              s_L_trimmed = s.substring(0, slen-1);
-
-            try {
-              Long l = Long.parseLong(s_L_trimmed);
-              return new SimpleEntry<>(Long.class, l.toString()); // if we make it to this line, the data parsed fine as a Long
-            } catch (NumberFormatException ex) {
-              // okay, guess it's not a Long
-            }
-
-          } // end if(!hasDecPnt) block
-
-          /// 5. check if data is a Float (32-bit IEEE 754 floating point with approximate extents +/- 3.4028235e38)
-          if (postfixFL || !lastCharF) {
-            try {
-              Float f = Float.parseFloat(sClean);
-
-              if (!f.isInfinite()) // if it's beyond the range of Float, maybe it's not beyond the range of Double
-                return new SimpleEntry<>(Float.class, f.toString()); // if we make it to this line, the data parsed fine as a Float and is finite
-
-            } catch (NumberFormatException ex) {
-              // okay, guess it's not a Float
-          } }
-
-        } // end uncommon types 1/2
-
-        /// 6. check if data is a Double (64-bit IEEE 754 floating point with approximate extents +/- 1.797693134862315e308 )
-        if (postfixFL || !lastCharF) {
-          try {
-            Double d = Double.parseDouble(sClean);
-
-            if (!d.isInfinite())
-              return new SimpleEntry<>(Double.class, d.toString()); // if we make it to this line, the data parsed fine as a Double
-            else // if it's beyond the range of Double, just return a String and let the user decide what to do
-              return new SimpleEntry<>(String.class, s);
-
-          } catch (NumberFormatException ex) {
-            // okay, guess it's not a Double
+      int digit = ('0' <= c && c <= '9') ? c - '0' : Character.digit(c, 10); // accepts non-ASCII digits, too
+      if (digit < 0 || result < multmin) return -1;
+      result *= 10;
+      if (result < limit + digit) return -1;
+      result -= digit;
+
+      signed = false; // no longer a lone sign
+      if (result == 0 && ii >= end) break; // more zeros won't change anything
+    }
+
+    if (first || signed) return -1; // empty, or a lone "+" or "-"
+
+    long value = (limit == Long.MIN_VALUE) ? result : -result;
+    if (Byte.MIN_VALUE    <= value && value <= Byte.MAX_VALUE)    return TypeCode.BYTE;
+    if (Short.MIN_VALUE   <= value && value <= Short.MAX_VALUE)   return TypeCode.SHORT;
+    if (Integer.MIN_VALUE <= value && value <= Integer.MAX_VALUE) return TypeCode.INTEGER;
+    return TypeCode.LONG;
+  }
+
+  // the value of data[start, end), skipping separators, which integerType()
+  // has already found to be a Byte or a Short
+  private static long longValue (CharSequence data, int start, int end) {
+    long value = 0;
+    boolean negative = false;
+
+    for (int ii = start; ii < end; ++ii) {
+      char c = data.charAt(ii);
+      if      (c == '-') negative = true;
+      else if (c != '+' && c != '_' && c != ',') value = 10 * value + Character.digit(c, 10);
+    }
+    return negative ? -value : value;
+  }
+
+  // If Float.parseFloat(s) (and Double.parseDouble(s)) would succeed, where s
+  // is data[start, end) without separators, followed by nZeros zeros, returns
+  // its "decimal exponent" -- the E for which the value of s is 0.ddd * 10^E,
+  // where the first d is non-zero -- or ZERO if it's zero or NaN; otherwise,
+  // returns NOT_A_FLOAT. This follows the JDK's implementation:
+  //
+  //   [+-]? ( NaN | Infinity | [0-9]* [.]? [0-9]* ([eE] [+-]? [0-9]+)? [fFdD]? )
+  //
+  // ...with at least one digit before the exponent, and any surrounding
+  // whitespace ignored. Hexadecimal floats need a 'p' or 'P' exponent, which
+  // typify() never lets through, so they're not recognised here.
+  @SuppressWarnings("fallthrough")
+  private static long decimalExponent (CharSequence data, int start, int end, int nZeros) {
+
+    // where we are in the grammar above
+    final int LEADING = 0, SIGN = 1, MANTISSA = 2, E = 3, EXPONENT_SIGN = 4,
+      EXPONENT = 5, SUFFIX = 6, TRAILING = 7, LITERAL = 8;
+
+    int state = LEADING;
+    String literal = null; int literalIndex = 0; // NaN or Infinity, if we're in one
+    boolean hasDigit = false, hasPoint = false, hasExponentDigit = false;
+
+    // position of the first non-zero digit, and the exponent
+    boolean nonZero = false;
+    long base = 0, exponent = 0;
+    boolean negativeExponent = false;
+
+    for (int ii = start; ii < end + nZeros; ++ii) {
+      char c = (ii < end) ? data.charAt(ii) : '0';
+      if (ii < end && (c == '_' || c == ',')) continue;
+
+      // whitespace is only allowed before and after everything else
+      if (c <= ' ') {
+        if (state == LEADING || state == TRAILING) continue;
+        if ((state == MANTISSA && hasDigit) || state == EXPONENT || state == SUFFIX ||
+            (state == LITERAL && literalIndex == literal.length())) { state = TRAILING; continue; }
+        return NOT_A_FLOAT;
+      }
+
+      switch (state) {
+        case LEADING:
+          if (c == '+' || c == '-') { state = SIGN; continue; }
+          // fall through
+        case SIGN:
+          if (c == 'N' || c == 'I') {
+            literal = (c == 'N') ? "NaN" : "Infinity";
+            literalIndex = 1; state = LITERAL; continue;
           }
-        }
+          state = MANTISSA;
+          // fall through
+        case MANTISSA:
+          if ('0' <= c && c <= '9') {
+            hasDigit = true;
+            if (c != '0' && !nonZero) nonZero = true;
+            if (!hasPoint && nonZero) ++base;        // digits before the point
+            else if (hasPoint && !nonZero) --base;   // zeros after the point
+            continue;
+          }
+          if (c == '.') { if (hasPoint) return NOT_A_FLOAT; hasPoint = true; continue; }
+          if (!hasDigit) return NOT_A_FLOAT;
+          if (c == 'e' || c == 'E') { state = E; continue; }
+          if (c == 'f' || c == 'F' || c == 'd' || c == 'D') { state = SUFFIX; continue; }
+          return NOT_A_FLOAT;
+
+        case E:
+          if (c == '+' || c == '-') { negativeExponent = (c == '-'); state = EXPONENT_SIGN; continue; }
+          // fall through
+        case EXPONENT_SIGN:
+          state = EXPONENT;
+          // fall through
+        case EXPONENT:
+          if ('0' <= c && c <= '9') {
+            hasExponentDigit = true;
+            if (exponent < Integer.MAX_VALUE) exponent = 10 * exponent + (c - '0');
+            continue;
+          }
+          if (!hasExponentDigit) return NOT_A_FLOAT;
+          if (c == 'f' || c == 'F' || c == 'd' || c == 'D') { state = SUFFIX; continue; }
+          return NOT_A_FLOAT;
 
-      } // problem parsing exponent, go to String immediately
-    } // if we have StringCharacters, we must have a String...
+        case LITERAL:
+          if (literalIndex < literal.length() && c == literal.charAt(literalIndex)) { ++literalIndex; continue; }
+          return NOT_A_FLOAT;
 
-    // ...or a Boolean!
-    if (commonTypes) { // try again for Boolean                          /// ***
-      if     (CollectionManip.contains(falseAliases, s)) return new SimpleEntry<>(Boolean.class, "false");
-      else if (CollectionManip.contains(trueAliases, s)) return new SimpleEntry<>(Boolean.class, "true");
+        default: // nothing may follow a suffix or trailing whitespace
+          return NOT_A_FLOAT;
+      }
     }
 
-    /// 7. revert to String by default, with caveats...
+    switch (state) {
+      case MANTISSA: if (!hasDigit) return NOT_A_FLOAT; break;
+      case EXPONENT: if (!hasExponentDigit) return NOT_A_FLOAT; break;
+      case SUFFIX: case TRAILING: break;
+      case LITERAL:
+        if (literalIndex < literal.length()) return NOT_A_FLOAT;
+        return literal.equals("NaN") ? ZERO : Long.MAX_VALUE;
+      default: return NOT_A_FLOAT; // nothing, a lone sign, or a dangling 'e'
+    }
 
-    /// 7a. if string has length 1, it is a single character
-    if (!commonTypes && slen == 1)
-      return new SimpleEntry<>(Character.class, s); // end uncommon types 2/2
+    if (literal != null) return literal.equals("NaN") ? ZERO : Long.MAX_VALUE;
+    if (!nonZero) return ZERO;
+    return base + (negativeExponent ? -exponent : exponent);
+  }
 
-    /// 7b. attempt to parse String as a LocalDateTime
-    if (parseDates && stringAsDate(s) != null) return new SimpleEntry<>(LocalDateTime.class, s);
+  // returns true if the number s, as in decimalExponent(), which has the
+  // given decimal exponent, is too large for a float (if maxExponent is
+  // FLOAT_EXPONENT) or a double (if it's DOUBLE_EXPONENT)
+  private static boolean overflows (CharSequence data, int start, int end, int nZeros,
+    long exponent, long maxExponent) {
 
-    // ...if we've made it all the way to here without returning, give up and return "String" and input as-is
-    return new SimpleEntry<>(String.class, data);
+    if (exponent != maxExponent) return exponent > maxExponent;
 
+    // within a factor of ten of the limit, we have to parse it to be sure
+    String s = clean(data, start, end, nZeros);
+    return (maxExponent == FLOAT_EXPONENT) ?
+      Float.isInfinite(Float.parseFloat(s)) : Double.isInfinite(Double.parseDouble(s));
   }
 
   /**
@@ -516,7 +906,11 @@ public class StringManip {
    *
    * <p>Loops over the list of {@link LocalDateTime} formats defined in
    * {@link DateTimeFormats} and attempts to parse the given {@link String} as
-   * a date-time string using each format, in order.</p>
+   * a date-time string using each format, in order. Only the formats which
+   * could produce a {@link String} of the same "shape" -- the same pattern of
+   * digits, letters, and punctuation -- are actually tried, so
+   * {@link String}s which can't be date-times are usually rejected without
+   * trying any formats at all.</p>
    *
    * <p>The first format in the list which can interpret the {@link String} as
    * a date will be used to create and return a {@link LocalDateTime} object,
@@ -531,15 +925,74 @@ public class StringManip {
    *
    */
   public static LocalDateTime stringAsDate (String date) {
-    List<DateTimeFormatter> formats = DateTimeFormats.get();
-
-    for (DateTimeFormatter format : formats) {
-      try {
-        return LocalDateTime.parse(date, format);
-      } catch (java.time.format.DateTimeParseException ex) {
-          // can't parse it as this format, but maybe the next one...?
-    } }
-    return null; // if none work, return null
+    return stringAsDate(date, null);
+  }
+
+  /**
+   * Works just like {@link #stringAsDate(String) stringAsDate()}, but if
+   * {@code dateFormat} isn't {@code null}, its single element is the index
+   * (into {@link DateTimeFormats#get()}) of a format to try before any of the
+   * others, or -1. If {@code date} can be parsed, the index of the format
+   * which parsed it is stored in {@code dateFormat}, so that a whole column of
+   * dates can be parsed by trying the format of the previous date first.
+   */
+  static LocalDateTime stringAsDate (String date, int[] dateFormat) {
+    FormatIndex index = DateTimeFormats.index();
+
+    int format = findDateFormat(date, 0, date.length(), index, dateFormat);
+    if (format < 0) return null; // if none work, return null
+
+    FixedWidthDateFormat fixedWidth = index.fixedWidth(format);
+    return (fixedWidth != null && fixedWidth.match(date) == FixedWidthDateFormat.YES) ?
+      fixedWidth.parse(date) : LocalDateTime.parse(date, index.format(format));
+  }
+
+  // returns the index of the first format which can parse data[start, end)
+  // as a LocalDateTime, or -1 -- see stringAsDate(String, int[])
+  private static int findDateFormat (CharSequence data, int start, int end,
+    FormatIndex index, int[] dateFormat) {
+
+    // try the suggested format first...
+    int first = (dateFormat == null) ? -1 : dateFormat[0];
+    if (0 <= first && first < index.size() && isDate(data, start, end, index, first))
+      return first;
+
+    // ...then any others which could produce a String of the same shape
+    for (int ii : index.candidates(data, start, end)) {
+      if (ii == first || !isDate(data, start, end, index, ii)) continue;
+
+      if (dateFormat != null) dateFormat[0] = ii;
+      return ii;
+    }
+    return -1;
+  }
+
+  // returns true if the index-th format can parse data[start, end)
+  private static boolean isDate (CharSequence data, int start, int end,
+    FormatIndex formats, int index) {
+
+    // simple numeric formats can usually be checked without a DateTimeFormatter
+    FixedWidthDateFormat fixedWidth = formats.fixedWidth(index);
+    if (fixedWidth != null) {
+      int match = fixedWidth.match(data, start, end);
+      if (match != FixedWidthDateFormat.MAYBE) return match == FixedWidthDateFormat.YES;
+    }
+
+    DateTimeFormatter format = formats.format(index);
+    String date = data.subSequence(start, end).toString();
+
+    // check that the text matches the format before parsing it for real,
+    // because that throws an exception if it doesn't
+    ParsePosition position = new ParsePosition(0);
+    if (format.parseUnresolved(date, position) == null ||
+        position.getIndex() != date.length()) return false;
+
+    try {
+      LocalDateTime.parse(date, format);
+      return true;
+    } catch (java.time.format.DateTimeParseException ex) {
+      return false; // can't parse it as this format (e.g. it has a 13th month)
+    }
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package scheme;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * "SIMD within a register" (SWAR) scanning kernels which examine eight bytes
+ * of a {@link ByteBuffer} at a time, packed into a single {@code long}.
+ *
+ * <p>All of the methods here expect buffers whose byte order is
+ * {@link ByteOrder#LITTLE_ENDIAN}, so that the byte at the lowest index of
+ * each eight-byte word is its least-significant byte. Only plain {@code long}
+ * arithmetic is used, so these kernels run on any Java version >= 8.</p>
+ */
+final class Swar {
+
+  // * private default constructor because this is a utility class
+  private Swar(){}
+
+  // every byte set to 0x01 / 0x7F
+  private static final long ONES = 0x0101010101010101L;
+  private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+  /** Eight copies of {@code '\n'}. */
+  static final long NEWLINES = broadcast('\n');
+
+  /** Eight copies of {@code '\r'}. */
+  static final long CARRIAGE_RETURNS = broadcast('\r');
+
+  /** Eight copies of {@code '"'}. */
+  static final long QUOTES = broadcast('"');
+
+  /** Eight copies of {@code ','}. */
+  static final long COMMAS = broadcast(',');
+
+  /** Returns a word with every byte set to {@code b}. */
+  static long broadcast (char b) {
+    return (b & 0xFFL) * ONES;
+  }
+
+  /**
+   * Returns a word whose bytes have their high bit set wherever the
+   * corresponding byte of {@code word} equals the corresponding byte of
+   * {@code pattern}, and which is zero everywhere else.
+   *
+   * <p>Unlike the shorter {@code (x - 0x01..) & ~x & 0x80..} trick, no carries
+   * cross byte boundaries here, so every match is exact and the result can be
+   * used for counting as well as for finding the first match.</p>
+   */
+  static long matches (long word, long pattern) {
+    long x = word ^ pattern;                      // matching bytes become zero
+    return ~(((x & LOW7) + LOW7) | x | LOW7);     // zero bytes => 0x80
+  }
+
+  /** Returns the index (0-7) of the first byte flagged in a non-zero mask. */
+  static int firstMatch (long mask) {
+    return Long.numberOfTrailingZeros(mask) >>> 3;
+  }
+
+  /**
+   * Counts the bytes equal to {@code b} within {@code buffer[from, to)}.
+   */
+  static long count (ByteBuffer buffer, int from, int to, char b) {
+
+    long pattern = broadcast(b), count = 0;
+    int ii = from;
+
+    // eight bytes at a time...
+    for (; ii + 8 <= to; ii += 8)
+      count += Long.bitCount(matches(buffer.getLong(ii), pattern));
+
+    // ...then whatever is left over (comparing bytes, as matches() does, so
+    // that bytes >= 0x80 aren't sign-extended)
+    for (; ii < to; ++ii) if (buffer.get(ii) == (byte) b) ++count;
+
+    return count;
+  }
+
+  /**
+   * Returns the index of the first byte within {@code buffer[from, to)} which
+   * is a CSV structural character, or {@code to} if there are none.
+   *
+   * <p>If {@code inQuotes} is {@code true}, only a {@code '"'} can change the
+   * state of a CSV parser, so that is the only character which is looked for.
+   * Otherwise, the first {@code '"'}, {@code ','}, {@code '\n'}, or
+   * {@code '\r'} is found.</p>
+   */
+  static int nextStructural (ByteBuffer buffer, int from, int to, boolean inQuotes) {
+
+    int ii = from;
+
+    // eight bytes at a time...
+    for (; ii + 8 <= to; ii += 8) {
+      long word = buffer.getLong(ii);
+      long mask = matches(word, QUOTES);
+      if (!inQuotes) mask |= matches(word, COMMAS) | matches(word, NEWLINES)
+                           | matches(word, CARRIAGE_RETURNS);
+      if (mask != 0) return ii + firstMatch(mask);
+    }
+
+    // ...then whatever is left over
+    for (; ii < to; ++ii) {
+      byte b = buffer.get(ii);
+      if (b == '"' || (!inQuotes && (b == ',' || b == '\n' || b == '\r'))) return ii;
+    }
+
+    return to;
+  }
+
+}
@@ -0,0 +1,124 @@
+package scheme;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compact codes for the types which
+ * {@link StringManip#typeCode(CharSequence, int, int, boolean, boolean, boolean, boolean) typeCode()}
+ * can infer, in the same order as they're tried by
+ * {@link StringManip#typify(String, boolean, boolean, boolean, boolean) typify()}.
+ *
+ * <p>Each code is a small non-negative {@code byte}, so a set of codes fits
+ * in the bits of an {@code int} "mask", where {@code code} is in the set if
+ * bit {@code 1 << code} is set; see {@link #narrowest(int)}.</p>
+ */
+public final class TypeCode {
+
+  // * private default constructor because this is a utility class
+  private TypeCode(){}
+
+  /** Code for {@link Object} -- the type of empty tokens. */
+  public static final byte OBJECT = 0;
+
+  /** Code for {@link Boolean}. */
+  public static final byte BOOLEAN = 1;
+
+  /** Code for {@link Byte}. */
+  public static final byte BYTE = 2;
+
+  /** Code for {@link Short}. */
+  public static final byte SHORT = 3;
+
+  /** Code for {@link Integer}. */
+  public static final byte INTEGER = 4;
+
+  /** Code for {@link Long}. */
+  public static final byte LONG = 5;
+
+  /** Code for {@link Float}. */
+  public static final byte FLOAT = 6;
+
+  /** Code for {@link Double}. */
+  public static final byte DOUBLE = 7;
+
+  /** Code for {@link Character}. */
+  public static final byte CHARACTER = 8;
+
+  /** Code for {@link LocalDateTime}. */
+  public static final byte LOCAL_DATE_TIME = 9;
+
+  /** Code for {@link String}. */
+  public static final byte STRING = 10;
+
+  // masks of the numeric types, and of the other non-String types which
+  // can't be mixed with them or with each other
+  private static final int NUMERIC = (1 << BYTE) | (1 << SHORT) | (1 << INTEGER) |
+    (1 << LONG) | (1 << FLOAT) | (1 << DOUBLE);
+  private static final int NON_NUMERIC = (1 << BOOLEAN) | (1 << CHARACTER) | (1 << LOCAL_DATE_TIME);
+
+  // the class of each code
+  private static final Class<?>[] CLASSES = {
+    Object.class, Boolean.class, Byte.class, Short.class, Integer.class, Long.class,
+    Float.class, Double.class, Character.class, LocalDateTime.class, String.class };
+
+  /**
+   * Returns the class which the given type {@code code} stands for.
+   *
+   * @param code one of the codes defined above
+   * @return the class which {@code code} stands for
+   * @throws IllegalArgumentException if {@code code} isn't a valid type code
+   */
+  public static Class<?> toClass (byte code) {
+    if (code < 0 || code >= CLASSES.length)
+      throw new IllegalArgumentException("toClass() : invalid type code " + code);
+    return CLASSES[code];
+  }
+
+  /**
+   * Returns the code for the given class, or -1 if it isn't one of the
+   * classes listed above.
+   *
+   * @param type the class to look up
+   * @return the code for {@code type}, or -1
+   */
+  public static byte of (Class<?> type) {
+    for (byte code = 0; code < CLASSES.length; ++code)
+      if (CLASSES[code] == type) return code;
+    return -1;
+  }
+
+  /**
+   * Returns the code of the narrowest common type of all of the types whose
+   * bits are set in the given {@code mask}, following the same rules as
+   * {@link CollectionManip#narrowestCommonType CollectionManip.narrowestCommonType()}.
+   *
+   * <p>So a column's type can be worked out by setting the bit of the type of
+   * each of its tokens in a single {@code int}, and calling this method once
+   * at the end (or whenever the mask changes).</p>
+   *
+   * @param mask the set of types, as bits {@code 1 << code}
+   * @return the code of the narrowest common type
+   * @throws IllegalArgumentException if {@code mask} contains no valid codes
+   */
+  public static byte narrowest (int mask) {
+
+    // String anywhere => String
+    if ((mask & (1 << STRING)) != 0) return STRING;
+
+    int numeric = mask & NUMERIC, nonNumeric = mask & NON_NUMERIC;
+
+    // numeric and non-numeric types, or mixed non-numeric types => String
+    if (numeric != 0 && nonNumeric != 0) return STRING;
+    if (Integer.bitCount(nonNumeric) > 1) return STRING;
+
+    // the widest numeric type has the highest code...
+    if (numeric != 0) return (byte) (31 - Integer.numberOfLeadingZeros(numeric));
+
+    // ...otherwise, there's at most a single non-numeric type
+    if (nonNumeric != 0) return (byte) Integer.numberOfTrailingZeros(nonNumeric);
+    if ((mask & (1 << OBJECT)) != 0) return OBJECT;
+
+    throw new IllegalArgumentException("narrowest() : no valid type codes in mask " + mask);
+  }
+
+}
@@ -0,0 +1,268 @@
+package scheme;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Infers the types of the columns of a CSV file by analysing every record in
+ * a range of the file, either sequentially or in parallel, or by analysing
+ * records picked at random from across the file.
+ *
+ * <p>Only the date-time formats in the given {@link FormatIndex} are
+ * recognised, so that every part of an inference uses the same formats.</p>
+ */
+final class TypeScan {
+
+  // * private default constructor because this is a utility class
+  private TypeScan(){}
+
+  // parallel scans split the file into chunks of at least 1MB and at most 256MB
+  private static final long MIN_CHUNK = 1L << 20;
+  private static final long MAX_CHUNK = 1L << 28;
+
+  // random samples read the file through small (64kB) windows...
+  private static final int RANDOM_WINDOW_SIZE = 1 << 16;
+
+  // ...and try this many records after each random offset to find one which
+  // has the expected number of tokens
+  private static final int RANDOM_ATTEMPTS = 4;
+
+  /**
+   * Types every token of every record which starts within {@code [from, to)},
+   * where {@code from} must be the start of a record.
+   *
+   * <p>Tokens in {@link ColumnTypes#isSettled settled} columns aren't typed
+   * (or even decoded), and the scan stops as soon as every column is settled
+   * -- but only while every (non-blank) record has had the same number of
+   * tokens. Once records of different lengths have been seen, a later record
+   * may have more columns than any so far, so the scan reads on to the end of
+   * the range. (So columns which only appear in longer records after the scan
+   * has stopped, in an otherwise rectangular file, are missed.) If
+   * {@link Options#columnStats() column statistics} are wanted, every token
+   * is counted, and the scan never stops early.</p>
+   */
+  static ColumnTypes sequential (FileChannel channel, Charset charset,
+    long from, long to, Options options, FormatIndex formats) throws IOException {
+    return sequential(channel, charset, from, to, options, formats,
+      new AtomicBoolean(), new AtomicBoolean());
+  }
+
+  // ...and stops early if 'done' is set by another scan which has settled
+  // every column, or sets it if this scan does -- unless 'ragged' is set, by
+  // this or another scan which has seen records of different lengths
+  private static ColumnTypes sequential (FileChannel channel, Charset charset,
+    long from, long to, Options options, FormatIndex formats,
+    AtomicBoolean done, AtomicBoolean ragged) throws IOException {
+
+    ColumnTypes types = new ColumnTypes(options.columnStats());
+    StatsAccumulator stats = types.stats();
+    int[] dateFormat = new int[1];
+
+    // the number of tokens in every (non-blank) record so far, or -1 if
+    // they haven't all been the same
+    int width = 0;
+
+    try (RecordReader reader = new RecordReader(channel, false, charset,
+      from, to, RecordReader.WINDOW_SIZE)) {
+
+      while (reader.next()) {
+        if (stats != null) stats.addRecord(reader.nTokens());
+
+        for (int cc = 0; cc < reader.nTokens(); ++cc)
+          if (!types.isSettled(cc)) typify(reader, cc, options, formats, types, dateFormat);
+          else if (stats != null) stats.add(cc, reader.chars(cc), TypeCode.STRING, options.postfixFL());
+
+        if (stats != null || reader.nTokens() == 0 || width < 0) continue;
+
+        if (width == 0) width = reader.nTokens();
+        else if (width != reader.nTokens()) { width = -1; ragged.set(true); continue; }
+
+        // nothing more to learn from the rest of the range
+        if (ragged.get()) continue;
+        if (types.allSettled()) { done.set(true); break; }
+        if (done.get()) break;
+      }
+    }
+
+    return types;
+  }
+
+  /**
+   * Types every token of every complete record from {@code from} (which must
+   * be the start of a record) to the end of the file, adding them to
+   * {@code types}, and returns the file offset of the end of the last one --
+   * where the next scan of the same (growing) file should begin.
+   *
+   * <p>A record is complete once it ends with a line break which isn't
+   * enclosed in double-quotes, so a final record which doesn't, because it's
+   * still being written (perhaps in the middle of a quoted token), is left
+   * for the next scan. Tokens in {@link ColumnTypes#isSettled settled} columns aren't
+   * typed, but the scan never stops early, because every record has to be
+   * read to find where the last one ends. Statistics aren't collected.</p>
+   */
+  static long appended (FileChannel channel, Charset charset, long from,
+    Options options, FormatIndex formats, ColumnTypes types) throws IOException {
+
+    long end = from;
+    int[] dateFormat = new int[1];
+
+    try (RecordReader reader = new RecordReader(channel, false, charset,
+      from, Long.MAX_VALUE, RecordReader.WINDOW_SIZE)) {
+
+      // stop at a final record which runs into the end of the file
+      while (reader.next() && reader.terminated()) {
+        for (int cc = 0; cc < reader.nTokens(); ++cc)
+          if (!types.isSettled(cc)) typify(reader, cc, options, formats, types, dateFormat);
+        end = reader.position();
+      }
+    }
+
+    return end;
+  }
+
+  /**
+   * Types every token of up to {@code options.sampleSize()} records, picked
+   * from random positions between {@code from} (which must be the start of a
+   * record) and the end of the file. Ranges no bigger than the smallest
+   * parallel chunk (1MB) are simply read in full.
+   *
+   * <p>Each random byte offset is re-synchronised by skipping to the end of
+   * the record it falls within, on the assumption that it isn't inside a
+   * quoted token. If that assumption was wrong, the records which follow will
+   * usually be split in the wrong places, so a record is only typed if it has
+   * exactly {@code nColumns} tokens; otherwise, the next few records are
+   * tried instead. Offsets are sorted before they're visited, so the file is
+   * read from start to end, and an offset which falls within a record that's
+   * already been read just moves on to the next record. The offsets depend
+   * only on the size of the file, so the same file always gives the same
+   * result.</p>
+   */
+  static ColumnTypes random (FileChannel channel, Charset charset,
+    long from, int nColumns, Options options, FormatIndex formats) throws IOException {
+
+    long size = channel.size();
+    if (size - from <= MIN_CHUNK) return sequential(channel, charset, from, size, options, formats);
+
+    // sorted random offsets within the file
+    SplittableRandom random = new SplittableRandom(size);
+    long[] offsets = random.longs(options.sampleSize(), from, size).sorted().toArray();
+
+    ColumnTypes types = new ColumnTypes(options.columnStats());
+    StatsAccumulator stats = types.stats();
+    int[] dateFormat = new int[1];
+
+    try (RecordReader reader = new RecordReader(channel, false, charset,
+      from, size, RANDOM_WINDOW_SIZE)) {
+
+      for (long offset : offsets) {
+
+        // skip the rest of the record that this offset falls within, unless
+        // we've already read past it
+        if (offset > reader.position()) {
+          reader.seek(offset);
+          if (!reader.next()) break;
+        }
+
+        for (int attempt = 0; attempt < RANDOM_ATTEMPTS && reader.next(); ++attempt) {
+          if (reader.nTokens() != nColumns) continue;
+          if (stats != null) stats.addRecord(nColumns);
+
+          for (int cc = 0; cc < nColumns; ++cc)
+            if (!types.isSettled(cc)) typify(reader, cc, options, formats, types, dateFormat);
+            else if (stats != null) stats.add(cc, reader.chars(cc), TypeCode.STRING, options.postfixFL());
+          break;
+        }
+
+        if (stats == null && types.allSettled()) break;
+      }
+    }
+
+    return types;
+  }
+
+  /**
+   * Types every token of every record from {@code from} (which must be the
+   * start of a record) to the end of the file, using the common
+   * {@link ForkJoinPool}.
+   *
+   * <p>The file is split into byte ranges ("chunks"), which are scanned in two
+   * parallel passes. The first pass counts the {@code '"'} characters in each
+   * chunk. A running total of those counts then tells us whether each chunk
+   * begins inside or outside of a quoted token, since every complete quoted
+   * token (including any escaped {@code ""} pairs inside it) contains an even
+   * number of quotes. In the second pass, each chunk skips ahead to the first
+   * newline which is outside of quotes -- the end of the record which
+   * straddles the chunk boundary -- and types every record which starts
+   * within the chunk. Finally, the per-column results are merged.</p>
+   *
+   * <p>If any one chunk finds that every column is
+   * {@link ColumnTypes#isSettled settled}, the merged result can't change, so
+   * all of the chunks stop -- unless any chunk has seen records of different
+   * lengths, in which case none of them stop early, as a later record may
+   * have more columns (see {@link #sequential sequential()}).</p>
+   */
+  static ColumnTypes parallel (FileChannel channel, Charset charset,
+    long from, Options options, FormatIndex formats) throws IOException {
+
+    long length = channel.size() - from;
+    if (length <= 0) return new ColumnTypes(options.columnStats());
+
+    // a few chunks per core, so that uneven chunks still balance out
+    long nChunks = Math.min(4L * ForkJoinPool.getCommonPoolParallelism(), length / MIN_CHUNK);
+    nChunks = Math.max(Math.max(1, nChunks), (length + MAX_CHUNK - 1) / MAX_CHUNK);
+
+    long[] bounds = new long[(int) nChunks + 1];
+    for (int ii = 0; ii <= nChunks; ++ii) bounds[ii] = from + length * ii / nChunks;
+
+    try {
+      // first pass: count the quotes in each chunk
+      long[] nQuotes = IntStream.range(0, (int) nChunks).parallel().mapToLong(ii -> {
+        try { return RecordReader.count(channel, bounds[ii], bounds[ii+1], '"');
+        } catch (IOException ex) { throw new UncheckedIOException(ex); }
+      }).toArray();
+
+      // does each chunk begin inside a pair of quotes?
+      boolean[] inQuotes = new boolean[(int) nChunks];
+      for (int ii = 1; ii < nChunks; ++ii)
+        inQuotes[ii] = inQuotes[ii-1] ^ ((nQuotes[ii-1] & 1) == 1);
+
+      // second pass: type the records which start within each chunk
+      AtomicBoolean done = new AtomicBoolean(), ragged = new AtomicBoolean();
+      return IntStream.range(0, (int) nChunks).parallel().mapToObj(ii -> {
+        try {
+          // skip the end of the record which straddles the chunk boundary
+          long start = (ii == 0) ? bounds[0] : RecordReader.nextRecordStart(
+            channel, bounds[ii], bounds[ii+1], inQuotes[ii]);
+
+          return sequential(channel, charset, start, bounds[ii+1], options, formats, done, ragged);
+
+        } catch (IOException ex) { throw new UncheckedIOException(ex); }
+      }).reduce(ColumnTypes::merge).orElseGet(() -> new ColumnTypes(options.columnStats()));
+
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  // infers the type of the given token of the reader's current record, and
+  // adds it to 'types' (and its statistics, if they're wanted) -- trying the
+  // last date-time format which matched in that column first, and then
+  // remembering the one which matched this time
+  private static void typify (RecordReader reader, int index, Options options,
+    FormatIndex formats, ColumnTypes types, int[] dateFormat) {
+
+    dateFormat[0] = types.dateFormat(index);
+    CharSequence token = reader.chars(index);
+    byte type = StringManip.typeCode(token, 0, token.length(), options.bool01(),
+      options.commonTypes(), options.postfixFL(), options.parseDates(), formats, dateFormat);
+    types.add(index, type, dateFormat[0]);
+    if (types.stats() != null) types.stats().add(index, token, type, options.postfixFL());
+  }
+
+}
@@ -1,17 +1,44 @@
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static scheme.CSV.dateFormats;
+import static scheme.CSV.headerExtents;
+import static scheme.CSV.infer;
+import static scheme.CSV.main;
+import static scheme.CSV.nLinesInFile;
 import static scheme.CSV.schema;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 
+import scheme.CSV;
+import scheme.ColumnStats;
+import scheme.Options;
+import scheme.Sampling;
+import scheme.SchemaResult;
+
 public class TestCSV {
 
   // private method to read resource file from this repo
@@ -51,12 +78,571 @@ public class TestCSV {
     filename = getResourcePath("example1.csv");
     assertNull(schema(filename));
 
+    // ...but that a missing file throws an exception
+    assertThrows(FileNotFoundException.class, () -> schema("no/such/file.csv"));
+
     // parse a file with multiple header rows
     filename = getResourcePath("example2.csv");
     schema = schema(filename, 0, 1, 10, false, false, false, true);
     System.out.println(schema);
 
+    // header rows beyond the analysed rows are inferred instead
+    filename = getResourcePath("example0.csv");
+    schema = schema(filename, 0, 100, 10, false, false, false, true);
+    assertEquals("one", schema.get(0).getKey());
+    assertEquals(0, headerExtents()[0]);
+    assertEquals(0, headerExtents()[1]);
+
+    // date-times in numeric formats, and in formats with text (a.m. / p.m.)
+    filename = getResourcePath("example4.csv");
+    schema = schema(filename);
+    assertEquals(LocalDateTime.class, schema.get(1).getValue());
+    assertEquals(LocalDateTime.class, schema.get(2).getValue());
+    assertEquals(String.class, schema.get(3).getValue());
+    assertEquals("MM/dd/yyyy hh:mm:ss a", dateFormats().get(2));
+
+
+  }
+
+  /**
+   * test nLinesInFile()
+   */
+  @Test
+  public void test_nLinesInFile() throws FileNotFoundException, IOException {
+
+    // the last line of example0.csv has no trailing '\n'
+    assertEquals(3, nLinesInFile(getResourcePath("example0.csv")));
+    assertEquals(0, nLinesInFile(getResourcePath("example1.csv")));
+    assertEquals(5, nLinesInFile(getResourcePath("example3.csv")));
+
+  }
+
+  /**
+   * test schema() on quoted tokens
+   */
+  @Test
+  public void test_schema_quoted() throws FileNotFoundException, IOException {
+
+    // quoted commas, escaped quotes, and a leading empty token
+    String filename = getResourcePath("example3.csv");
+    List<Entry<String, Class<?>>> schema = schema(filename);
+
+    assertEquals(4, schema.size());
+    assertEquals("id",    schema.get(0).getKey());
+    assertEquals("value", schema.get(3).getKey());
+
+    assertEquals(  Byte.class, schema.get(0).getValue() );
+    assertEquals(String.class, schema.get(1).getValue() );
+    assertEquals(String.class, schema.get(2).getValue() );
+    assertEquals( Float.class, schema.get(3).getValue() );
+
+    // a very long quoted token should be parsed in linear time
+    File file = File.createTempFile("scheme", ".csv");
+    file.deleteOnExit();
+
+    StringBuilder longToken = new StringBuilder("\"");
+    for (int ii = 0; ii < 100000; ++ii) longToken.append(ii % 10 == 0 ? "\"\"" : "x");
+    longToken.append("\"");
+
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("index,text");
+      for (int ii = 0; ii < 10; ++ii) writer.println(ii + "," + longToken);
+    }
+
+    schema = schema(file.getAbsolutePath());
+    assertEquals(  Byte.class, schema.get(0).getValue() );
+    assertEquals(String.class, schema.get(1).getValue() );
+
+    // quoted tokens may span multiple lines
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.print("index,text\r\n");
+      for (int ii = 0; ii < 10; ++ii) writer.print(ii + ",\"line one\r\nline, two\"\r\n");
+    }
+
+    schema = schema(file.getAbsolutePath());
+    assertEquals(2, schema.size());
+    assertEquals(  Byte.class, schema.get(0).getValue() );
+    assertEquals(String.class, schema.get(1).getValue() );
+    assertEquals(0, headerExtents()[1]);
+
+    // a lone '\r' outside of quotes ends a record, too
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.print("a,b\r1,2\r3,4\r5,6\r");
+    }
+
+    assertEquals(2, schema(file.getAbsolutePath()).size());
+
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.print("id,count\r1,2\r3,4\r\r5,6\r");
+    }
+
+    schema = schema(file.getAbsolutePath());
+    assertEquals(2, schema.size());
+    assertEquals("id",    schema.get(0).getKey());
+    assertEquals("count", schema.get(1).getKey());
+    assertEquals(Byte.class, schema.get(0).getValue() );
+    assertEquals(Byte.class, schema.get(1).getValue() );
+
+    // ...even when the file is split into chunks, or sampled at random
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.print("index,value,\"note\"\r");
+      for (int ii = 0; ii < 60000; ++ii)
+        writer.print(ii + "," + (ii < 45000 ? ii % 100 : ii % 100 + 200) +
+          ",\"line " + ii + ",\rline two\"" + (ii % 2 == 0 ? "\r" : "\r\n"));
+    }
+
+    filename = file.getAbsolutePath();
+    schema = schema(filename, Options.defaults().withSampling(Sampling.STREAM));
+    assertEquals(3, schema.size());
+    assertEquals("index",       schema.get(0).getKey());
+    assertEquals(Integer.class, schema.get(0).getValue() );
+    assertEquals(  Short.class, schema.get(1).getValue() );
+    assertEquals( String.class, schema.get(2).getValue() );
+
+    assertEquals(schema, schema(filename, Options.defaults().withSampling(Sampling.PARALLEL)));
+    assertEquals(schema, schema(filename, Options.defaults().withSampling(Sampling.RANDOM)));
+
+  }
+
+  /**
+   * test schema() with Sampling.PARALLEL
+   */
+  @Test
+  public void test_schema_parallel() throws FileNotFoundException, IOException {
+
+    Options parallel = Options.defaults().withSampling(Sampling.PARALLEL);
+
+    // for small files, every row is in the head sample anyway
+    for (String name : new String[]{ "example0.csv", "example3.csv" }) {
+      String filename = getResourcePath(name);
+      assertEquals(schema(filename), schema(filename, parallel));
+    }
+
+    // an empty file has no schema
+    assertNull(schema(getResourcePath("example1.csv"), parallel));
+
+    // a column which changes type far below the head sample
+    File file = File.createTempFile("scheme", ".csv");
+    file.deleteOnExit();
+
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("index,value,\"note\"");
+      for (int ii = 0; ii < 60000; ++ii)
+        writer.println(ii + "," + (ii == 50000 ? "n/a" : ii % 100) +
+          ",\"line " + ii + ",\nline \"\"two\"\"\"");
+    }
+
+    String filename = file.getAbsolutePath();
+
+    List<Entry<String, Class<?>>> head = schema(filename);
+    assertEquals(Byte.class, head.get(1).getValue());
+
+    List<Entry<String, Class<?>>> full = schema(filename, parallel);
+    assertEquals(3, full.size());
+    assertEquals("index",       full.get(0).getKey());
+    assertEquals(Integer.class, full.get(0).getValue());
+    assertEquals(String.class,  full.get(1).getValue());
+    assertEquals(String.class,  full.get(2).getValue());
+
+    // streaming sees every row, too
+    assertEquals(full, schema(filename, Options.defaults().withSampling(Sampling.STREAM)));
+
+  }
+
+  /**
+   * test schema() with random sampling
+   */
+  @Test
+  public void test_schema_random() throws FileNotFoundException, IOException {
+
+    Options random = Options.defaults().withSampling(Sampling.RANDOM);
+
+    // small files are analysed in full
+    for (String name : new String[]{ "example0.csv", "example3.csv" }) {
+      String filename = getResourcePath(name);
+      assertEquals(schema(filename), schema(filename, random));
+    }
+
+    // a column which widens over the last quarter of a file of over 1MB, with
+    // quoted tokens spanning multiple lines to throw off re-synchronisation
+    File file = File.createTempFile("scheme", ".csv");
+    file.deleteOnExit();
+
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("index,value,\"note\"");
+      for (int ii = 0; ii < 60000; ++ii)
+        writer.println(ii + "," + (ii < 45000 ? ii % 100 : ii % 100 + 200) +
+          ",\"line " + ii + ",\nline \"\"two\"\"\"");
+    }
+
+    String filename = file.getAbsolutePath();
+    assertEquals(Byte.class, schema(filename).get(1).getValue());
+
+    List<Entry<String, Class<?>>> sample = schema(filename, random);
+    assertEquals(3, sample.size());
+    assertEquals("index",       sample.get(0).getKey());
+    assertEquals(Integer.class, sample.get(0).getValue());
+    assertEquals(Short.class,   sample.get(1).getValue());
+    assertEquals(String.class,  sample.get(2).getValue());
+
+    // the sample is the same every time
+    assertEquals(sample, schema(filename, random.withSampleSize(1000)));
+
+  }
+
+  /**
+   * test schema() on files whose columns are all Strings early on
+   */
+  @Test
+  public void test_schema_settled() throws IOException {
+
+    Options stream = Options.defaults().withSampling(Sampling.STREAM);
+
+    // once every column is a String, a streaming scan of a file whose records
+    // have all been the same length stops -- so a longer record after that is
+    // never seen, unless statistics (which need every token) are wanted
+    File file = File.createTempFile("scheme", ".csv");
+    file.deleteOnExit();
+
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("name,note");
+      for (int ii = 0; ii < 1000; ++ii) writer.println("foo,bar");
+      writer.println("foo,bar,baz");
+    }
+
+    String filename = file.getAbsolutePath();
+    assertEquals(2, schema(filename, stream).size());
+    assertEquals(3, schema(filename, stream.withColumnStats(true)).size());
+
+    // tokens in settled columns aren't typed, but they're still counted
+    assertEquals(1002, CSV.columnStats().get(0).count());
+    assertEquals(   1, CSV.columnStats().get(2).count());
+
+    // if some records have been shorter than others by the time every column
+    // is a String, the scan doesn't stop
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("foo,1");
+      writer.println("foo");
+      for (int ii = 0; ii < 1000; ++ii) writer.println("foo,bar");
+      writer.println("foo,bar,baz");
+    }
+
+    List<Entry<String, Class<?>>> schema = schema(filename, stream);
+    assertEquals(3, schema.size());
+    assertEquals("X3", schema.get(2).getKey());
+    assertEquals(String.class, schema.get(2).getValue());
+
+  }
+
+  /**
+   * test dateFormats()
+   */
+  @Test
+  public void test_dateFormats() throws IOException {
+
+    // one column with a single date-time format, and one with two
+    File file = File.createTempFile("scheme", ".csv");
+    file.deleteOnExit();
+
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("index,single,mixed");
+      for (int ii = 0; ii < 20; ++ii)
+        writer.printf("%d,2020-01-%02d 10:00:00,%s%n", ii, ii + 1,
+          ii % 2 == 0 ? "01.02.2020 10:00:00" : "2020/02/01 10:00:00.00");
+    }
+
+    String filename = file.getAbsolutePath();
+
+    for (Sampling sampling : new Sampling[]{ Sampling.HEAD, Sampling.STREAM }) {
+      List<Entry<String, Class<?>>> schema = schema(filename,
+        Options.defaults().withSampling(sampling));
+
+      assertEquals(LocalDateTime.class, schema.get(1).getValue());
+      assertEquals(LocalDateTime.class, schema.get(2).getValue());
+      assertEquals(Arrays.asList(null, "yyyy-MM-dd HH:mm:ss", null), dateFormats());
+    }
+
+  }
+
+  /**
+   * test infer()
+   */
+  @Test
+  public void test_infer() throws Exception {
+
+    // a file with a header in its first row, and one with a header below a
+    // row of metadata, above a different number of columns
+    File one = File.createTempFile("scheme", ".csv");
+    File two = File.createTempFile("scheme", ".csv");
+    one.deleteOnExit();
+    two.deleteOnExit();
+
+    try (PrintWriter writer = new PrintWriter(one)) {
+      writer.println("id,when");
+      for (int ii = 0; ii < 20; ++ii) writer.printf("%d,2020-01-%02d 10:00:00%n", ii, ii + 1);
+    }
+
+    try (PrintWriter writer = new PrintWriter(two)) {
+      writer.println("metadata,,");
+      writer.println("alpha,beta,gamma");
+      for (int ii = 0; ii < 20; ++ii) writer.println(ii + "," + (ii % 2 == 0) + "," + ii / 2.0);
+    }
+
+    SchemaResult result = infer(one.getAbsolutePath(), Options.defaults());
+    assertEquals(one.getAbsolutePath(), result.file());
+    assertEquals(2, result.schema().size());
+    assertEquals("id", result.schema().get(0).getKey());
+    assertEquals(LocalDateTime.class, result.schema().get(1).getValue());
+    assertArrayEquals(new int[]{ 0, 0 }, result.headerExtents());
+    assertEquals(Arrays.asList(null, "yyyy-MM-dd HH:mm:ss"), result.dateFormats());
+    assertTrue(result.columnStats().isEmpty());
+    assertTrue(result.diagnostics().isEmpty());
+
+    // * the result can't be changed
+    assertThrows(UnsupportedOperationException.class, () -> result.schema().clear());
+    assertThrows(UnsupportedOperationException.class, () -> result.schema().get(0).setValue(String.class));
+    result.headerExtents()[0] = 42;
+    assertEquals(0, result.headerExtents()[0]);
+
+    // * problems are reported in the result, not on System.err
+    SchemaResult empty = infer(getResourcePath("example1.csv"), Options.defaults());
+    assertNull(empty.schema());
+    assertEquals(Arrays.asList("no data found in file"), empty.diagnostics());
+
+    // * ...except for I/O errors
+    assertThrows(FileNotFoundException.class, () -> infer("no/such/file.csv", Options.defaults()));
+
+    // * many files can be analysed at once, without mixing up their results
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<SchemaResult>> futures = new ArrayList<>();
+      for (int ii = 0; ii < 200; ++ii) {
+        String file = (ii % 2 == 0 ? one : two).getAbsolutePath();
+        futures.add(pool.submit(() -> infer(file, Options.defaults())));
+      }
+
+      for (int ii = 0; ii < futures.size(); ++ii) {
+        SchemaResult future = futures.get(ii).get();
+        if (ii % 2 == 0) {
+          assertArrayEquals(new int[]{ 0, 0 }, future.headerExtents());
+          assertEquals(result.schema(), future.schema());
+        } else {
+          assertArrayEquals(new int[]{ 1, 1 }, future.headerExtents());
+          assertEquals("beta", future.schema().get(1).getKey());
+          assertEquals(Float.class, future.schema().get(2).getValue());
+        }
+      }
+
+    } finally {
+      pool.shutdownNow();
+    }
+
+  }
+
+  /**
+   * test columnStats()
+   */
+  @Test
+  public void test_columnStats() throws IOException {
+
+    File file = File.createTempFile("scheme", ".csv");
+    file.deleteOnExit();
+
+    // an integer column, a decimal column with empty tokens, and two columns
+    // missing from some rows: a few distinct Strings, and a column which
+    // widens to String
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("id,value,name,mixed");
+      for (int ii = 0; ii < 1000; ++ii)
+        writer.println(ii + "," + (ii % 10 == 0 ? "" : String.valueOf(ii / 4.0 - 100)) +
+          (ii % 7 == 0 ? "" : ",\"n" + (ii % 3) + "\"," + (ii == 500 ? "x" : "12")));
+    }
+
+    String filename = file.getAbsolutePath();
+
+    // * statistics aren't collected unless they're asked for
+    schema(filename);
+    assertTrue(CSV.columnStats().isEmpty());
+
+    for (Sampling sampling : new Sampling[]{ Sampling.STREAM, Sampling.PARALLEL }) {
+      List<Entry<String, Class<?>>> schema = schema(filename,
+        Options.defaults().withSampling(sampling).withColumnStats(true));
+      List<ColumnStats> stats = CSV.columnStats();
+      assertEquals(4, stats.size(), sampling.toString());
+
+      // * every row is counted, even once a column is settled
+      ColumnStats id = stats.get(0);
+      assertEquals(Short.class, schema.get(0).getValue());
+      assertEquals(1000, id.count());
+      assertEquals(0,    id.nullCount());
+      assertEquals(0.0,   id.min());
+      assertEquals(999.0, id.max());
+      assertEquals(1, id.minLength());
+      assertEquals(3, id.maxLength());
+      assertEquals(1000, id.distinctCount(), 50);
+
+      ColumnStats value = stats.get(1);
+      assertEquals(Float.class, schema.get(1).getValue());
+      assertEquals(100, value.emptyCount());
+      assertEquals(-99.75,  value.min());
+      assertEquals(149.75, value.max());
+
+      // * rows with fewer tokens have nulls; Strings have no min / max
+      ColumnStats name = stats.get(2);
+      assertEquals(String.class, schema.get(2).getValue());
+      assertEquals(1000 - 143, name.count());
+      assertEquals(143, name.nullCount());
+      assertEquals(4, name.minLength());
+      assertEquals(3, name.distinctCount());
+      assertTrue(Double.isNaN(name.min()));
+
+      ColumnStats mixed = stats.get(3);
+      assertEquals(String.class, schema.get(3).getValue());
+      assertEquals(1000 - 143, mixed.count());
+      assertEquals(2, mixed.distinctCount());
+      assertTrue(Double.isNaN(mixed.max()));
+    }
+
+    // * every sampling strategy counts each row of a small file exactly once
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("id,name,value");
+      writer.println("1,x,2.5");
+      writer.println("2,,");
+      writer.println("3,z");
+    }
+
+    List<String> expected = null;
+    for (Sampling sampling : Sampling.values()) {
+      schema(filename, Options.defaults().withSampling(sampling).withColumnStats(true));
+      List<String> stats = new ArrayList<>();
+      for (ColumnStats column : CSV.columnStats()) stats.add(column.toString());
+
+      if (expected == null) expected = stats;
+      else assertEquals(expected, stats, sampling.toString());
+    }
+    assertEquals(3, CSV.columnStats().get(0).count());
+
+  }
+
+  /**
+   * test schema() with a very wide file, with two header rows and ragged rows
+   */
+  @Test
+  public void test_schema_wide() throws IOException {
+
+    int nCols = 5000;
+    File file = File.createTempFile("scheme", ".csv");
+    file.deleteOnExit();
+
+    try (PrintWriter writer = new PrintWriter(file)) {
+      StringBuilder group = new StringBuilder(), name = new StringBuilder();
+      for (int cc = 0; cc < nCols; ++cc) {
+        group.append(cc == 0 ? "" : ",").append("g").append(cc / 100);
+        name.append(cc == 0 ? "" : ",").append("s").append(cc);
+      }
+      writer.println(group);
+      writer.println(name);
+
+      // every other row is missing its last column
+      for (int rr = 0; rr < 30; ++rr) {
+        StringBuilder row = new StringBuilder();
+        for (int cc = 0; cc < nCols - rr % 2; ++cc)
+          row.append(cc == 0 ? "" : ",").append(cc % 3 == 0 ? "x" + rr : String.valueOf(rr * cc));
+        writer.println(row);
+      }
+    }
+
+    List<Entry<String, Class<?>>> schema = schema(file.getAbsolutePath());
+
+    assertEquals(nCols, schema.size());
+    assertEquals(0, headerExtents()[0]);
+    assertEquals(1, headerExtents()[1]);
+    assertEquals("g0_s0", schema.get(0).getKey());
+    assertEquals("g49_s4999", schema.get(4999).getKey());
+    assertEquals(String.class, schema.get(3).getValue());
+    assertEquals(Byte.class, schema.get(4).getValue());
+    assertEquals(Short.class, schema.get(40).getValue());
+    assertEquals(Integer.class, schema.get(4999).getValue());
+
+  }
+
+  /**
+   * test schema() with files in different encodings
+   */
+  @Test
+  public void test_schema_encoding() throws IOException {
+
+    Path dir = Files.createTempDirectory("scheme");
+    StringBuilder sb = new StringBuilder();
+    for (int ii = 0; ii < 20; ++ii) sb.append(ii).append(",").append(ii % 2 == 0 ? "é" : "ü").append("\n");
+
+    // * a UTF-8 byte order mark isn't part of the first token
+    Path bom = dir.resolve("bom.csv");
+    Files.write(bom, ("\uFEFF" + sb).getBytes(StandardCharsets.UTF_8));
+
+    for (Sampling sampling : Sampling.values()) {
+      List<Entry<String, Class<?>>> schema = schema(bom.toString(), Options.defaults().withSampling(sampling));
+      assertEquals("X1", schema.get(0).getKey(), sampling.toString());
+      assertEquals(Byte.class, schema.get(0).getValue(), sampling.toString());
+      assertEquals(Character.class, schema.get(1).getValue(), sampling.toString());
+    }
+
+    // * UTF-8 is detected without one, too
+    Path utf8 = dir.resolve("utf8.csv");
+    Files.write(utf8, sb.toString().getBytes(StandardCharsets.UTF_8));
+    assertEquals(Character.class, schema(utf8.toString()).get(1).getValue());
+
+    // * UTF-16 isn't supported
+    Path utf16 = dir.resolve("utf16.csv");
+    Files.write(utf16, ("\uFEFF" + sb).getBytes(StandardCharsets.UTF_16LE));
+    assertNull(schema(utf16.toString()));
+
+    for (Path path : new Path[]{ bom, utf8, utf16 }) Files.delete(path);
+    Files.delete(dir);
+
+  }
+
+  /**
+   * test main() on a directory of CSV files
+   */
+  @Test
+  public void test_main() throws IOException {
+
+    // a directory holding two CSV files (in reverse order) and a non-CSV file
+    Path dir = Files.createTempDirectory("scheme");
+    Files.write(dir.resolve("b.csv"), Arrays.asList("id,flag", "1,true", "2,false", "3,true"));
+    Files.write(dir.resolve("a.csv"), Arrays.asList("id,name", "1,Alice", "2,Bob", "3,Carol"));
+    Files.write(dir.resolve("c.txt"), Arrays.asList("not,a,csv"));
+
+    // ...and one which can't be read, which fails without stopping the others
+    Files.write(dir.resolve("b0.csv"), "\uFEFFid,name\n1,Alice\n".getBytes(StandardCharsets.UTF_16LE));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintStream stdout = System.out;
+
+    try {
+      System.setOut(new PrintStream(bytes, true, "UTF-8"));
+      main(new String[]{ "-j", "2", dir.toString() });
+
+    } finally {
+      System.setOut(stdout);
+      for (String name : new String[]{ "a.csv", "b.csv", "b0.csv", "c.txt" })
+        Files.delete(dir.resolve(name));
+      Files.delete(dir);
+    }
+
+    String output = bytes.toString("UTF-8");
+
+    // files are printed in order, whichever worker finishes first
+    int a = output.indexOf("a.csv' schema:");
+    int b = output.indexOf("b.csv' schema:");
+    assertTrue(0 <= a && a < b);
+    assertFalse(output.contains("c.txt"));
+
+    assertTrue(output.contains("flag=class java.lang.Boolean"));
+    assertTrue(output.contains("b0.csv' : java.io.UnsupportedEncodingException: UTF-16LE"));
+    assertTrue(output.contains("3 files (1 failed)"));
 
   }
 
-}
\ No newline at end of file
+}
@@ -1,14 +1,27 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 import org.junit.jupiter.api.Test;
 
+import scheme.CSV;
+import scheme.DateTimeFormatRegistry;
+import scheme.Options;
+import scheme.SchemaResult;
+
 import static scheme.DateTimeFormats.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class TestDateTimeFormats {
 
@@ -95,5 +108,63 @@ public class TestDateTimeFormats {
     assertEquals("dd/MM/yyyy HH:mm",    strings.get(N-1));
 
   }
-  
-}
\ No newline at end of file
+
+  /**
+   * test registry()
+   */
+  @Test
+  public void test_registry() throws Exception {
+
+    // a copy of the global registry starts with the same formats...
+    DateTimeFormatRegistry registry = registry().copy();
+    assertEquals(strings(), registry.strings());
+
+    // ...but changing it doesn't change the global registry
+    List<String> before = registry.strings();
+    assertTrue(registry.add(Locale.US, "yyyy|MM|dd HH:mm"));
+    assertEquals(N, get().size());
+    assertEquals(N+1, registry.get().size());
+    assertEquals("yyyy|MM|dd HH:mm", registry.strings().get(N));
+
+    // * lists which were returned earlier don't change
+    assertEquals(N, before.size());
+
+    // * a new registry is empty
+    DateTimeFormatRegistry empty = new DateTimeFormatRegistry();
+    assertTrue(empty.get().isEmpty());
+    assertFalse(empty.remove(0).isPresent());
+
+    // * formats added from many threads at once are all kept
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int ii = 0; ii < 100; ++ii) {
+        String format = "yyyy-MM-dd '" + ii + "'";
+        futures.add(pool.submit(() -> empty.add(Locale.US, format)));
+      }
+      for (Future<Boolean> future : futures) assertTrue(future.get());
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(100, empty.strings().size());
+    assertEquals(100, empty.strings().stream().distinct().count());
+
+    // * each inference recognises only the formats of its own registry
+    File file = File.createTempFile("scheme", ".csv");
+    file.deleteOnExit();
+
+    try (PrintWriter writer = new PrintWriter(file)) {
+      writer.println("id,when");
+      for (int ii = 0; ii < 20; ++ii) writer.printf("%d,2020|01|%02d 10:30%n", ii, ii + 1);
+    }
+
+    SchemaResult global = CSV.infer(file.getAbsolutePath(), Options.defaults());
+    assertEquals(String.class, global.schema().get(1).getValue());
+
+    SchemaResult own = CSV.infer(file.getAbsolutePath(), Options.defaults().withDateFormats(registry));
+    assertEquals(LocalDateTime.class, own.schema().get(1).getValue());
+    assertEquals("yyyy|MM|dd HH:mm", own.dateFormats().get(1));
+
+  }
+
+}
@@ -0,0 +1,70 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import scheme.DirectoryWatcher;
+import scheme.Options;
+import scheme.SchemaResult;
+
+public class TestDirectoryWatcher {
+
+  /**
+   * test run() and close()
+   */
+  @Test
+  public void test_run() throws Exception {
+
+    Path dir = Files.createTempDirectory("scheme");
+    Files.write(dir.resolve("old.csv"), Arrays.asList("alpha,beta", "1,2", "3,4"));
+
+    LinkedBlockingQueue<SchemaResult> results = new LinkedBlockingQueue<>();
+    DirectoryWatcher watcher = new DirectoryWatcher(dir, Options.defaults(), 2, 200, results::add);
+    Thread thread = new Thread(watcher);
+    thread.start();
+
+    try {
+      // files which are already there are analysed...
+      SchemaResult old = results.poll(10, TimeUnit.SECONDS);
+      assertEquals(dir.resolve("old.csv").toString(), old.file());
+      assertEquals("alpha", old.schema().get(0).getKey());
+
+      // * ...and so are new ones -- but only once they've been written, and
+      //   only if they're CSV files
+      Path file = dir.resolve("new.csv");
+      Files.write(file, Arrays.asList("gamma,delta", "1,2"));
+      Files.write(dir.resolve("notes.txt"), Arrays.asList("not,a,csv"));
+      Thread.sleep(50);
+      Files.write(file, Arrays.asList("x,2.5"), StandardOpenOption.APPEND);
+
+      SchemaResult result = results.poll(10, TimeUnit.SECONDS);
+      assertEquals(file.toString(), result.file());
+      assertEquals("gamma", result.schema().get(0).getKey());
+      assertEquals(String.class, result.schema().get(0).getValue());
+      assertEquals(Float.class, result.schema().get(1).getValue());
+
+      // * nothing else has changed, so there's nothing else to analyse
+      assertNull(results.poll(1, TimeUnit.SECONDS));
+
+    } finally {
+      watcher.close();
+      thread.join(10000);
+    }
+
+    assertFalse(thread.isAlive());
+    assertThrows(IllegalArgumentException.class,
+      () -> new DirectoryWatcher(dir, Options.defaults(), 0, 200, results::add));
+
+  }
+
+}
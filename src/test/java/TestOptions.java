@@ -0,0 +1,85 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import scheme.DateTimeFormatRegistry;
+import scheme.DateTimeFormats;
+import scheme.Options;
+import scheme.Sampling;
+
+public class TestOptions {
+
+  /**
+   * test defaults()
+   */
+  @Test
+  public void test_defaults() {
+
+    // the defaults match CSV.schema(String)
+    Options options = Options.defaults();
+
+    assertEquals(Sampling.HEAD, options.sampling());
+    assertEquals(-1, options.firstHeaderRowIndex());
+    assertEquals(-1, options.lastHeaderRowIndex());
+    assertEquals(35, options.nTestRows());
+    assertEquals(1000, options.sampleSize());
+
+    assertFalse(options.bool01());
+    assertFalse(options.commonTypes());
+    assertFalse(options.postfixFL());
+    assertTrue(options.parseDates());
+    assertFalse(options.columnStats());
+    assertSame(DateTimeFormats.registry(), options.dateFormats());
+
+  }
+
+  /**
+   * test with...()
+   */
+  @Test
+  public void test_with() {
+
+    Options defaults = Options.defaults();
+    DateTimeFormatRegistry registry = new DateTimeFormatRegistry();
+    Options options = defaults.withSampling(Sampling.PARALLEL)
+      .withHeaderRows(1, 2).withTestRows(100).withSampleSize(50).withBool01(true)
+      .withCommonTypes(true).withPostfixFL(true).withParseDates(false).withColumnStats(true)
+      .withDateFormats(registry);
+
+    // the original options are untouched
+    assertNotSame(defaults, options);
+    assertEquals(Sampling.HEAD, defaults.sampling());
+    assertEquals(35, defaults.nTestRows());
+
+    // ...and the copy has the new values
+    assertEquals(Sampling.PARALLEL, options.sampling());
+    assertEquals(1,   options.firstHeaderRowIndex());
+    assertEquals(2,   options.lastHeaderRowIndex());
+    assertEquals(100, options.nTestRows());
+    assertEquals(50,  options.sampleSize());
+
+    assertTrue(options.bool01());
+    assertTrue(options.commonTypes());
+    assertTrue(options.postfixFL());
+    assertFalse(options.parseDates());
+    assertTrue(options.columnStats());
+    assertSame(registry, options.dateFormats());
+
+    // sampling is required
+    assertThrows(IllegalArgumentException.class, () -> defaults.withSampling(null));
+
+    // ...and random samples can't be empty
+    assertThrows(IllegalArgumentException.class, () -> defaults.withSampleSize(0));
+
+    // ...and neither can the registry of date-time formats be missing
+    assertThrows(IllegalArgumentException.class, () -> defaults.withDateFormats(null));
+
+  }
+
+}
@@ -0,0 +1,99 @@
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static scheme.CSV.infer;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import scheme.Options;
+import scheme.Sampling;
+import scheme.SchemaCache;
+import scheme.SchemaResult;
+
+public class TestSchemaCache {
+
+  /**
+   * test infer()
+   */
+  @Test
+  public void test_infer() throws Exception {
+
+    // a file which is much longer than the rows searched for its header
+    Path dir = Files.createTempDirectory("scheme");
+    Path file = dir.resolve("data.csv");
+    List<String> lines = new ArrayList<>();
+    lines.add("id,when");
+    for (int ii = 0; ii < 200; ++ii) lines.add(String.format("%03d,2020-01-%02d 10:00:00", ii, ii % 28 + 1));
+    Files.write(file, lines);
+    FileTime modified = Files.getLastModifiedTime(file);
+
+    Path cacheDir = dir.resolve("cache");
+    Options options = Options.defaults().withSampling(Sampling.STREAM);
+
+    // a miss infers the schema as usual, and caches it in the background
+    SchemaResult miss;
+    try (SchemaCache cache = new SchemaCache(cacheDir)) {
+      miss = cache.infer(file.toString(), options);
+      assertEquals(infer(file.toString(), options).schema(), miss.schema());
+    }
+    assertEquals(1, Files.list(cacheDir).count());
+
+    // * a hit doesn't analyse the file: changing a row after the head, without
+    //   changing the file's size or modification time, goes unnoticed...
+    lines.set(150, "abc,2020-01-01 10:00:00");
+    Files.write(file, lines);
+    Files.setLastModifiedTime(file, modified);
+
+    try (SchemaCache cache = new SchemaCache(cacheDir)) {
+      SchemaResult hit = cache.infer(file.toString(), options);
+      assertEquals(miss.schema(), hit.schema());
+      assertArrayEquals(miss.headerExtents(), hit.headerExtents());
+      assertEquals(miss.dateFormats(), hit.dateFormats());
+      assertEquals(miss.diagnostics(), hit.diagnostics());
+
+      // * ...but different options are a miss
+      assertEquals(String.class, cache.infer(file.toString(),
+        options.withHeaderRows(0, 0)).schema().get(0).getValue());
+    }
+
+    // * so is a new modification time
+    Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 2000));
+    try (SchemaCache cache = new SchemaCache(cacheDir)) {
+      assertEquals(String.class, cache.infer(file.toString(), options).schema().get(0).getValue());
+    }
+
+    // * ...and a change to the head of the file, even if nothing else changes
+    //   (so first cache the file as it was, with its original modification
+    //   time, so that only the head's checksum differs)
+    lines.set(150, "149,2020-01-10 10:00:00");
+    Files.write(file, lines);
+    Files.setLastModifiedTime(file, modified);
+
+    try (SchemaCache cache = new SchemaCache(cacheDir)) {
+      assertEquals(miss.schema(), cache.infer(file.toString(), options).schema());
+    }
+
+    lines.set(1, "zzz,2020-01-01 10:00:00");
+    Files.write(file, lines);
+    Files.setLastModifiedTime(file, modified);
+
+    try (SchemaCache cache = new SchemaCache(cacheDir)) {
+      assertEquals(String.class, cache.infer(file.toString(), options).schema().get(0).getValue());
+    }
+
+    // * missing files are reported just like infer() reports them
+    try (SchemaCache cache = new SchemaCache(cacheDir)) {
+      assertThrows(FileNotFoundException.class, () -> cache.infer("no/such/file.csv", options));
+    }
+
+  }
+
+}
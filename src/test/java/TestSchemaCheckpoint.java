@@ -0,0 +1,110 @@
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static scheme.CSV.infer;
+import static scheme.CSV.resume;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import scheme.Options;
+import scheme.Sampling;
+import scheme.SchemaCheckpoint;
+
+public class TestSchemaCheckpoint {
+
+  /**
+   * test resume()
+   */
+  @Test
+  public void test_resume() throws Exception {
+
+    Path file = Files.createTempFile("scheme", ".csv");
+    file.toFile().deleteOnExit();
+    String path = file.toString();
+    Options options = Options.defaults();
+
+    // a file with only a header can't be analysed for certain yet...
+    Files.write(file, "alpha,beta\n".getBytes(StandardCharsets.UTF_8));
+    SchemaCheckpoint checkpoint = resume(path, options, null);
+    assertEquals(Arrays.asList("could not infer column names"), checkpoint.result().diagnostics());
+
+    // * ...so once there are enough records, the header is found after all;
+    //   a final record without a newline isn't read until it's finished
+    StringBuilder records = new StringBuilder();
+    for (int ii = 0; ii < 100; ++ii) records.append(ii).append(",2020-01-05 10:00:00\n");
+    Files.write(file, (records + "100,2020-01").getBytes(StandardCharsets.UTF_8),
+      StandardOpenOption.APPEND);
+
+    checkpoint = resume(path, options, checkpoint);
+    assertEquals(Files.size(file) - "100,2020-01".length(), checkpoint.offset());
+    assertEquals("alpha", checkpoint.result().schema().get(0).getKey());
+    assertEquals(Byte.class, checkpoint.result().schema().get(0).getValue());
+    assertEquals(LocalDateTime.class, checkpoint.result().schema().get(1).getValue());
+    assertEquals("yyyy-MM-dd HH:mm:ss", checkpoint.result().dateFormats().get(1));
+    assertArrayEquals(new int[]{ 0, 0 }, checkpoint.result().headerExtents());
+    assertTrue(checkpoint.result().diagnostics().isEmpty());
+
+    // * appended records widen the types...
+    Files.write(file, "-05 10:00:00\n300,2020-01-06 10:00:00\n".getBytes(StandardCharsets.UTF_8),
+      StandardOpenOption.APPEND);
+    checkpoint = resume(path, options, checkpoint);
+    assertEquals(Files.size(file), checkpoint.offset());
+    assertEquals(Short.class, checkpoint.result().schema().get(0).getValue());
+    assertEquals(infer(path, options.withSampling(Sampling.STREAM)).schema(), checkpoint.result().schema());
+
+    // * ...even after the checkpoint has been saved and loaded again
+    ByteArrayOutputStream saved = new ByteArrayOutputStream();
+    checkpoint.write(saved);
+    checkpoint = SchemaCheckpoint.read(new ByteArrayInputStream(saved.toByteArray()));
+    assertEquals(Files.size(file), checkpoint.offset());
+    assertEquals(Short.class, checkpoint.result().schema().get(0).getValue());
+    assertEquals("yyyy-MM-dd HH:mm:ss", checkpoint.result().dateFormats().get(1));
+
+    Files.write(file, "2.5,x\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    checkpoint = resume(path, options, checkpoint);
+    assertEquals(Float.class, checkpoint.result().schema().get(0).getValue());
+    assertEquals(String.class, checkpoint.result().schema().get(1).getValue());
+    assertNull(checkpoint.result().dateFormats().get(1));
+
+    // * a file which has been rewritten is analysed from the start
+    Files.write(file, ("gamma,delta\n" + records).getBytes(StandardCharsets.UTF_8));
+    checkpoint = resume(path, options, checkpoint);
+    assertEquals("gamma", checkpoint.result().schema().get(0).getKey());
+    assertEquals(Byte.class, checkpoint.result().schema().get(0).getValue());
+    assertEquals(LocalDateTime.class, checkpoint.result().schema().get(1).getValue());
+
+    // * ...and so is a file which is read with different options
+    checkpoint = resume(path, options.withParseDates(false), checkpoint);
+    assertEquals(String.class, checkpoint.result().schema().get(1).getValue());
+
+    // * a final record which ends inside a quoted token isn't finished, even
+    //   if it ends with a newline
+    Files.write(file, ("alpha,beta\n" + records).getBytes(StandardCharsets.UTF_8));
+    checkpoint = resume(path, options, null);
+    long size = Files.size(file);
+
+    Files.write(file, "41,\"first\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    checkpoint = resume(path, options, checkpoint);
+    assertEquals(size, checkpoint.offset());
+
+    Files.write(file, "tail\"\n42,\"x\"\n43,\"y\"\n".getBytes(StandardCharsets.UTF_8),
+      StandardOpenOption.APPEND);
+    checkpoint = resume(path, options, checkpoint);
+    assertEquals(Files.size(file), checkpoint.offset());
+    assertEquals(Byte.class, checkpoint.result().schema().get(0).getValue());
+    assertEquals(infer(path, options.withSampling(Sampling.STREAM)).schema(), checkpoint.result().schema());
+
+  }
+
+}
@@ -0,0 +1,82 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import scheme.Options;
+import scheme.SchemaServer;
+
+public class TestSchemaServer {
+
+  /**
+   * test the /schema endpoint
+   */
+  @Test
+  public void test_schema() throws Exception {
+
+    Path file = Files.createTempFile("scheme", ".csv");
+    Files.write(file, Arrays.asList("alpha,beta", "1,2.5", "3,4.5"));
+
+    try (SchemaServer server = new SchemaServer(
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Options.defaults())) {
+      server.start();
+      String base = "http://127.0.0.1:" + server.address().getPort() + "/schema";
+
+      // * a file on the server's file system...
+      String json = request(base + "?path=" + URLEncoder.encode(file.toString(), "UTF-8"), null, 200);
+      assertTrue(json.contains("\"name\":\"alpha\",\"type\":\"java.lang.Byte\""));
+      assertTrue(json.contains("\"name\":\"beta\",\"type\":\"java.lang.Float\""));
+      assertTrue(json.contains("\"headerExtents\":[0,0]"));
+
+      // * ...or the body of the request
+      json = request(base + "?sampling=stream", "name,count\nfoo,1\nbar,2\nbaz,3\n", 200);
+      assertTrue(json.startsWith("{\"file\":null,"));
+      assertTrue(json.contains("\"name\":\"name\",\"type\":\"java.lang.String\""));
+      assertTrue(json.contains("\"name\":\"count\",\"type\":\"java.lang.Byte\""));
+
+      // * errors
+      assertTrue(request(base + "?path=" + URLEncoder.encode(file + ".missing", "UTF-8"), null, 404)
+        .startsWith("{\"error\":"));
+      request(base, null, 400);
+      request(base + "?path=x&sampling=nonsense", null, 400);
+    }
+
+  }
+
+  // sends a GET request (or a POST request, if there's a body) and returns
+  // the response, which should have the given status
+  private static String request (String url, String body, int status) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+
+    if (body != null) {
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    assertEquals(status, connection.getResponseCode());
+    try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int n; (n = in.read(buffer)) > 0; ) bytes.write(buffer, 0, n);
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+}
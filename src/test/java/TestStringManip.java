@@ -1,13 +1,18 @@
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
 import java.util.Map.Entry;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static scheme.StringManip.*;
 
+import scheme.DateTimeFormats;
+import scheme.TypeCode;
+
 public class TestStringManip {
 
   /**
@@ -279,6 +284,28 @@ public class TestStringManip {
     assertEquals(String.class, retval.getKey());
     assertEquals(val, retval.getValue());
 
+    // * negative exponents can't be integral, so they're floating-point
+    val = "1e-5";
+    retval = typify(val, false, false, false, false);
+    assertEquals(Float.class, retval.getKey());
+    assertEquals("1.0E-5", retval.getValue());
+
+    val = "25E-400";
+    retval = typify(val, false, false, false, false);
+    assertEquals(Float.class, retval.getKey());
+    assertEquals("0.0", retval.getValue());
+
+    // * dates and other punctuated digits are not numbers
+    val = "2020-01-05";
+    retval = typify(val, false, false, false, false);
+    assertEquals(String.class, retval.getKey());
+    assertEquals(val, retval.getValue());
+
+    val = "1.2.3";
+    retval = typify(val, false, false, false, false);
+    assertEquals(String.class, retval.getKey());
+    assertEquals(val, retval.getValue());
+
     // * if number is integral and ends in 'l' or 'L', return Long
     // bool01, commonTypes, postfixFL, parseDates
     val = "42l"; // only if commonTypes == false and postfixFL == true
@@ -393,6 +420,42 @@ public class TestStringManip {
 
   }
 
+  /**
+   * test typeCode()
+   */
+  @Test
+  public void test_typeCode() {
+
+    // * typeCode() agrees with typify() for every combination of flags
+    String[] data = { "", " \t", "'  '", "true", "0", "1", "2", "200", "2e9", "5e9",
+      "5e25", "5e99", "5e999", "1e-5", "2,000", "60_000.0", "42L", "42f", "x",
+      "1976-04-01 21:12:00", "'1976-04-01 21:12:00'", "3.4028235e38", "3.5e38", "hello" };
+
+    for (String token : data) {
+      for (int flags = 0; flags < 16; ++flags) {
+        boolean bool01 = (flags & 1) != 0, commonTypes = (flags & 2) != 0;
+        boolean postfixFL = (flags & 4) != 0, parseDates = (flags & 8) != 0;
+
+        Class<?> type = typify(token, bool01, commonTypes, postfixFL, parseDates).getKey();
+        byte code = typeCode(token, 0, token.length(), bool01, commonTypes, postfixFL, parseDates);
+        assertEquals(type, TypeCode.toClass(code), token + ", " + flags);
+      }
+    }
+
+    // * only the given slice of the data is typed
+    String row = "7,3.5,true,,abc";
+    assertEquals(TypeCode.BYTE,    typeCode(row, 0, 1, false, false, false, false));
+    assertEquals(TypeCode.FLOAT,   typeCode(row, 2, 3, false, false, false, false));
+    assertEquals(TypeCode.BOOLEAN, typeCode(row, 6, 4, false, false, false, false));
+    assertEquals(TypeCode.OBJECT,  typeCode(row, 11, 0, false, false, false, false));
+    assertEquals(TypeCode.STRING,  typeCode(row, 12, 3, false, false, false, false));
+
+    // * ...which must be within the data
+    assertThrows(IndexOutOfBoundsException.class, () -> typeCode(row, 12, 4, false, false, false, false));
+    assertThrows(IndexOutOfBoundsException.class, () -> typeCode(row, -1, 1, false, false, false, false));
+
+  }
+
   /**
    * test makeValidIdentifier()
    */
@@ -431,4 +494,41 @@ public class TestStringManip {
 
   }
 
-}
\ No newline at end of file
+  /**
+   * test stringAsDate()
+   */
+  @Test
+  public void test_stringAsDate() {
+
+    // * default formats (see resources/dateFormats.dat)
+    assertEquals(LocalDateTime.of(1976, 4, 1, 21, 12), stringAsDate("1976-04-01 21:12:00"));
+    assertEquals(LocalDateTime.of(1976, 4, 13, 21, 12), stringAsDate("13/04/1976 21:12"));
+
+    // * fractions of a second, and the SMART resolver's adjustments
+    assertEquals(LocalDateTime.of(1976, 4, 1, 21, 12, 0, 123456700), stringAsDate("1976-04-01 21:12:00.1234567"));
+    assertEquals(LocalDateTime.of(1977, 1, 1, 0, 0),   stringAsDate("1976-12-31 24:00:00"));
+    assertEquals(LocalDateTime.of(1977, 2, 28, 21, 12), stringAsDate("1977-02-29 21:12:00"));
+
+    // * the right shape, but not a valid date-time
+    assertNull(stringAsDate("1976-13-01 21:12:00"));
+    assertNull(stringAsDate("1976-04-01 21:12:0"));
+
+    // * not the shape of any date-time
+    assertNull(stringAsDate("hello, world"));
+    assertNull(stringAsDate("1976-04-01"));
+
+    // * formats with names of months are found, once they've been added...
+    String date = "01 Apr 1976 09:12 PM";
+    assertNull(stringAsDate(date));
+
+    DateTimeFormats.add(new Locale("en", "US"), "dd MMM yyyy hh:mm a");
+    assertEquals(LocalDateTime.of(1976, 4, 1, 21, 12), stringAsDate(date));
+    assertEquals(LocalDateTime.of(1976, 9, 1, 9, 12), stringAsDate("01 Sep 1976 09:12 AM"));
+
+    // * ...and forgotten again once they've been removed
+    DateTimeFormats.remove(DateTimeFormats.get().size() - 1);
+    assertNull(stringAsDate(date));
+
+  }
+
+}
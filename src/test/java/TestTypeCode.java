@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import scheme.TypeCode;
+
+public class TestTypeCode {
+
+  /**
+   * test toClass() and of()
+   */
+  @Test
+  public void test_toClass_of() {
+
+    // every code maps to a class and back again
+    for (byte code = TypeCode.OBJECT; code <= TypeCode.STRING; ++code)
+      assertEquals(code, TypeCode.of(TypeCode.toClass(code)));
+
+    assertEquals(Boolean.class, TypeCode.toClass(TypeCode.BOOLEAN));
+    assertEquals(LocalDateTime.class, TypeCode.toClass(TypeCode.LOCAL_DATE_TIME));
+    assertEquals(TypeCode.DOUBLE, TypeCode.of(Double.class));
+
+    // other classes and codes are invalid
+    assertEquals(-1, TypeCode.of(Number.class));
+    assertThrows(IllegalArgumentException.class, () -> TypeCode.toClass((byte) -1));
+    assertThrows(IllegalArgumentException.class, () -> TypeCode.toClass((byte) 11));
+
+  }
+
+  /**
+   * test narrowest()
+   */
+  @Test
+  public void test_narrowest() {
+
+    // the same rules as narrowestCommonType()
+    assertEquals(TypeCode.OBJECT,  TypeCode.narrowest(1 << TypeCode.OBJECT));
+    assertEquals(TypeCode.BYTE,    TypeCode.narrowest((1 << TypeCode.OBJECT) | (1 << TypeCode.BYTE)));
+    assertEquals(TypeCode.LONG,    TypeCode.narrowest((1 << TypeCode.INTEGER) | (1 << TypeCode.LONG)));
+    assertEquals(TypeCode.FLOAT,   TypeCode.narrowest((1 << TypeCode.BYTE) | (1 << TypeCode.FLOAT)));
+    assertEquals(TypeCode.DOUBLE,  TypeCode.narrowest((1 << TypeCode.FLOAT) | (1 << TypeCode.DOUBLE)));
+    assertEquals(TypeCode.BOOLEAN, TypeCode.narrowest((1 << TypeCode.OBJECT) | (1 << TypeCode.BOOLEAN)));
+    assertEquals(TypeCode.LOCAL_DATE_TIME, TypeCode.narrowest(1 << TypeCode.LOCAL_DATE_TIME));
+
+    // mixed numeric and non-numeric types, mixed non-numeric types, or any String => String
+    assertEquals(TypeCode.STRING, TypeCode.narrowest((1 << TypeCode.BYTE) | (1 << TypeCode.BOOLEAN)));
+    assertEquals(TypeCode.STRING, TypeCode.narrowest((1 << TypeCode.CHARACTER) | (1 << TypeCode.LOCAL_DATE_TIME)));
+    assertEquals(TypeCode.STRING, TypeCode.narrowest((1 << TypeCode.OBJECT) | (1 << TypeCode.STRING)));
+
+    // no types at all
+    assertThrows(IllegalArgumentException.class, () -> TypeCode.narrowest(0));
+    assertThrows(IllegalArgumentException.class, () -> TypeCode.narrowest(1 << 20));
+
+  }
+
+}
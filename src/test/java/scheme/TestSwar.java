@@ -0,0 +1,129 @@
+package scheme;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSwar {
+
+  // bytes which are likely to confuse the kernels -- the structural
+  // characters, their neighbours, and bytes with the high bit set
+  private static final int[] TRICKY = { '\n', '\r', '"', ',', '\n' ^ 0x80, '\r' ^ 0x80,
+    '"' ^ 0x80, ',' ^ 0x80, 0x00, 0x01, 0x7F, 0x80, 0x81, 0xFE, 0xFF, 'a', ' ' };
+
+  // a little-endian buffer holding the given bytes, at 'offset' within it
+  private static ByteBuffer buffer (byte[] bytes, int offset) {
+    ByteBuffer buffer = ByteBuffer.allocate(offset + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+    for (int ii = 0; ii < bytes.length; ++ii) buffer.put(offset + ii, bytes[ii]);
+    return buffer;
+  }
+
+  // 'length' random bytes, half of them tricky and half of them anything
+  private static byte[] random (Random random, int length) {
+    byte[] bytes = new byte[length];
+    for (int ii = 0; ii < length; ++ii)
+      bytes[ii] = (byte) (random.nextBoolean() ? TRICKY[random.nextInt(TRICKY.length)] : random.nextInt(256));
+    return bytes;
+  }
+
+  /**
+   * test matches() against a byte-by-byte comparison
+   */
+  @Test
+  public void test_matches() {
+
+    // every byte value in every lane, against every pattern, next to
+    // neighbours with and without the high bit set
+    for (int pp = 0; pp < 256; ++pp) {
+      long pattern = Swar.broadcast((char) pp);
+
+      for (int bb = 0; bb < 256; ++bb) {
+        int[] lanes = { bb, pp, pp ^ 0x80, bb ^ 0x80, (pp + 1) & 0xFF, (pp - 1) & 0xFF, 0x00, 0xFF };
+
+        for (int shift = 0; shift < 8; ++shift) {
+          long word = 0, expected = 0;
+          for (int lane = 0; lane < 8; ++lane) {
+            int b = lanes[(lane + shift) % 8];
+            word |= (long) b << (8 * lane);
+            if (b == pp) expected |= 0x80L << (8 * lane);
+          }
+          assertEquals(expected, Swar.matches(word, pattern));
+        }
+      }
+    }
+
+  }
+
+  /**
+   * test count() against a byte-by-byte count
+   */
+  @Test
+  public void test_count() {
+
+    Random random = new Random(42);
+
+    // ranges of every length up to 40 bytes (so with tails of 0-7 bytes), at
+    // every alignment, counting every byte value
+    for (int length = 0; length <= 40; ++length) {
+      for (int offset = 0; offset < 8; ++offset) {
+        byte[] bytes = random(random, length);
+        ByteBuffer buffer = buffer(bytes, offset);
+
+        for (int bb = 0; bb < 256; ++bb) {
+          long expected = 0;
+          for (byte b : bytes) if ((b & 0xFF) == bb) ++expected;
+          assertEquals(expected, Swar.count(buffer, offset, offset + length, (char) bb));
+        }
+      }
+    }
+
+  }
+
+  /**
+   * test nextStructural() against a byte-by-byte search
+   */
+  @Test
+  public void test_nextStructural() {
+
+    // every byte value, in a full word and in a tail
+    for (int bb = 0; bb < 256; ++bb) {
+      boolean quote = bb == '"', structural = quote || bb == ',' || bb == '\n' || bb == '\r';
+
+      for (int length : new int[]{ 3, 8, 11 }) {
+        byte[] bytes = new byte[length];
+        for (int ii = 0; ii < length; ++ii) bytes[ii] = (byte) (ii == length - 1 ? bb : 'a');
+        ByteBuffer buffer = buffer(bytes, 0);
+
+        assertEquals(structural ? length - 1 : length, Swar.nextStructural(buffer, 0, length, false));
+        assertEquals(quote      ? length - 1 : length, Swar.nextStructural(buffer, 0, length, true));
+      }
+    }
+
+    // random ranges, at every alignment, inside and outside of quotes
+    Random random = new Random(42);
+
+    for (int trial = 0; trial < 2000; ++trial) {
+      int length = random.nextInt(40), offset = random.nextInt(8);
+      byte[] bytes = random(random, length);
+      ByteBuffer buffer = buffer(bytes, offset);
+
+      for (boolean inQuotes : new boolean[]{ false, true }) {
+        for (int from = 0; from <= length; ++from) {
+          int expected = from;
+          while (expected < length) {
+            byte b = bytes[expected];
+            if (b == '"' || (!inQuotes && (b == ',' || b == '\n' || b == '\r'))) break;
+            ++expected;
+          }
+          assertEquals(offset + expected, Swar.nextStructural(buffer, offset + from, offset + length, inQuotes));
+        }
+      }
+    }
+
+  }
+
+}